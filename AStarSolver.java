@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+/**
+ * A maze solver that uses the A* algorithm, guided by the Manhattan distance
+ * from each square to the goal.  Since every move costs one and the Manhattan
+ * distance never overestimates the remaining cost, the path that it finds is
+ * a shortest one, but it usually expands far fewer squares than breadth-first
+ * search.  The open set is a binary heap stored in a long[] array, where each
+ * entry packs the estimated total cost of a square into the high 32 bits and
+ * the index of the square into the low 32 bits, so entries can be compared as
+ * plain numbers.  Squares are set to MazeGrid.VISITED when they are expanded,
+ * and the path is set to MazeGrid.PATH.
+ */
+public class AStarSolver extends AbstractMazeSolver {
+
+	private long[] heap = new long[64];  // the open set, as a binary min-heap.
+	private int heapSize;                // number of entries in the heap.
+
+
+	public String getName() {
+		return "astar";
+	}
+
+
+	protected boolean search(MazeGrid grid, int start, int goal) {
+		int cols = grid.getColumns();
+		int[] offset = offsets(grid);
+		int goalRow = goal / cols;
+		int goalCol = goal % cols;
+		byte[] from = new byte[grid.getRows() * cols];
+		int[] cost = new int[grid.getRows() * cols];  // best known distance from start to each square
+		Arrays.fill(cost, Integer.MAX_VALUE);
+		from[start] = ROOT;
+		cost[start] = 0;
+		heapSize = 0;
+		push(Math.abs(start / cols - goalRow) + Math.abs(start % cols - goalCol), start);
+		while (heapSize > 0) {
+			int square = (int)pop();
+			if (grid.get(square) != MazeGrid.OPEN)
+				continue;  // an out-of-date entry for a square that was already expanded
+			if (square == goal) {
+				pathLength = markPath(grid, from, offset, goal);
+				return true;
+			}
+			mark(grid, square, MazeGrid.VISITED);
+			expand(grid, square);
+			int nextCost = cost[square] + 1;
+			for (int dir = 0; dir < 4; dir++) {
+				int next = square + offset[dir];
+				if (grid.get(next) == MazeGrid.OPEN && nextCost < cost[next]) {
+					cost[next] = nextCost;
+					from[next] = (byte)(dir + 1);
+					int estimate = Math.abs(next / cols - goalRow) + Math.abs(next % cols - goalCol);
+					push(nextCost + estimate, next);
+				}
+			}
+		}
+		return false;
+	}
+
+
+	private void push(int priority, int square) {
+		if (heapSize == heap.length)
+			heap = Arrays.copyOf(heap, 2*heapSize);
+		long entry = ((long)priority << 32) | square;
+		int i = heapSize++;
+		while (i > 0) {  // sift up
+			int parent = (i - 1) >> 1;
+			if (heap[parent] <= entry)
+				break;
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = entry;
+	}
+
+
+	private long pop() {
+		long top = heap[0];
+		long entry = heap[--heapSize];
+		int i = 0;
+		while (true) {  // sift down
+			int child = 2*i + 1;
+			if (child >= heapSize)
+				break;
+			if (child + 1 < heapSize && heap[child+1] < heap[child])
+				child++;
+			if (entry <= heap[child])
+				break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = entry;
+		return top & 0xFFFFFFFFL;
+	}
+
+}
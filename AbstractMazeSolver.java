@@ -0,0 +1,108 @@
+
+/**
+ * A convenient base class for maze solvers.  It takes care of the listener,
+ * the timing and the statistics that are required by MazeSolverAlgorithm,
+ * so that a subclass only has to implement search().  Subclasses work with
+ * square indexes in the grid rather than with rows and columns.
+ */
+public abstract class AbstractMazeSolver implements MazeSolverAlgorithm {
+
+	/**
+	 * The value stored in a from[] array for the square where a search started.
+	 * See markPath().
+	 */
+	protected static final byte ROOT = 5;
+
+	private MazeSolverListener listener;  // if non-null, is told about each step of the search.
+	private long elapsedNanos;            // time taken by the most recent solve().
+
+	protected int pathLength;          // set by search() to the length of the path that it found.
+	protected long squaresExpanded;    // counts the squares expanded by search(); see expand().
+
+
+	public void setListener(MazeSolverListener listener) {
+		this.listener = listener;
+	}
+
+	public int getPathLength() {
+		return pathLength;
+	}
+
+	public long getSquaresExpanded() {
+		return squaresExpanded;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public final boolean solve(MazeGrid grid, int startRow, int startCol, int goalRow, int goalCol) {
+		pathLength = 0;
+		squaresExpanded = 0;
+		long startTime = System.nanoTime();
+		boolean found = search(grid, grid.index(startRow,startCol), grid.index(goalRow,goalCol));
+		elapsedNanos = System.nanoTime() - startTime;
+		if ( ! found )
+			pathLength = 0;
+		return found;
+	}
+
+
+	/**
+	 * Does the actual search, from the square with index start to the square
+	 * with index goal.  This method should set pathLength if it finds a path.
+	 */
+	protected abstract boolean search(MazeGrid grid, int start, int goal);
+
+
+	/**
+	 * Returns the change in square index for a move in each of the four
+	 * directions:  right, up, down and left.  This is the order in which
+	 * MazeSolver.recurse() tries the neighbors of a square.
+	 */
+	protected static int[] offsets(MazeGrid grid) {
+		int cols = grid.getColumns();
+		return new int[] { 1, -cols, cols, -1 };
+	}
+
+
+	/**
+	 * Should be called when the search starts to examine the neighbors of a square.
+	 * Counts the square as expanded and tells the listener, if any.
+	 */
+	protected final void expand(MazeGrid grid, int square) {
+		squaresExpanded++;
+		if (listener != null)
+			listener.squareEntered(square / grid.getColumns(), square % grid.getColumns());
+	}
+
+
+	/**
+	 * Changes the state of a square in the grid and tells the listener, if any.
+	 */
+	protected final void mark(MazeGrid grid, int square, byte state) {
+		grid.set(square, state);
+		if (listener != null)
+			listener.squareChanged(square / grid.getColumns(), square % grid.getColumns());
+	}
+
+
+	/**
+	 * Marks a path as MazeGrid.PATH, starting at square and following the
+	 * directions stored in from[] back to a square whose entry is ROOT.
+	 * Each entry of from[] holds one plus the index, in offsets(), of the
+	 * move that was used to reach that square.
+	 * @return the number of squares on the path.
+	 */
+	protected final int markPath(MazeGrid grid, byte[] from, int[] offset, int square) {
+		int length = 1;
+		while (from[square] != ROOT) {
+			mark(grid, square, MazeGrid.PATH);
+			square -= offset[from[square] - 1];
+			length++;
+		}
+		mark(grid, square, MazeGrid.PATH);
+		return length;
+	}
+
+}
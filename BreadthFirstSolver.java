@@ -0,0 +1,57 @@
+
+/**
+ * A maze solver that does a breadth-first search from the start, so the
+ * path that it finds is always a shortest one.  Every square that the search
+ * reaches is set to MazeGrid.VISITED, and when the goal is found the path is
+ * traced back and set to MazeGrid.PATH.  Besides the grid itself, the search
+ * uses one byte per square to remember how each square was reached, and a
+ * queue that holds the current frontier of the search.
+ */
+public class BreadthFirstSolver extends AbstractMazeSolver {
+
+	public String getName() {
+		return "bfs";
+	}
+
+
+	protected boolean search(MazeGrid grid, int start, int goal) {
+		int[] offset = offsets(grid);
+		byte[] from = new byte[grid.getRows() * grid.getColumns()];
+		int[] queue = new int[64];  // circular queue of squares that have been reached but not expanded
+		int head = 0, count = 0;
+		from[start] = ROOT;
+		mark(grid, start, MazeGrid.VISITED);
+		queue[0] = start;
+		count = 1;
+		while (count > 0) {
+			int square = queue[head];
+			head = (head + 1) & (queue.length - 1);
+			count--;
+			if (square == goal) {
+				pathLength = markPath(grid, from, offset, goal);
+				return true;
+			}
+			expand(grid, square);
+			for (int dir = 0; dir < 4; dir++) {
+				int next = square + offset[dir];
+				if (grid.get(next) == MazeGrid.OPEN) {
+					from[next] = (byte)(dir + 1);
+					mark(grid, next, MazeGrid.VISITED);
+					if (count == queue.length) {
+						// The queue is full; unroll it into an array of twice the size.
+						int[] bigger = new int[2*queue.length];
+						int firstPart = queue.length - head;
+						System.arraycopy(queue, head, bigger, 0, firstPart);
+						System.arraycopy(queue, 0, bigger, firstPart, head);
+						queue = bigger;
+						head = 0;
+					}
+					queue[(head + count) & (queue.length - 1)] = next;
+					count++;
+				}
+			}
+		}
+		return false;
+	}
+
+}
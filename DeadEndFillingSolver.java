@@ -0,0 +1,68 @@
+
+/**
+ * A maze solver that uses dead-end filling.  Instead of searching from the
+ * start, it scans the whole grid for dead ends (open squares, other than the
+ * start and the goal, with at most one open neighbor) and fills each one in,
+ * following the corridor back until it reaches a junction.  Filled squares
+ * are set to MazeGrid.VISITED.  In a maze without loops, such as the ones
+ * made by MazeGrid.create(), the squares that are left open are exactly the
+ * path from the start to the goal, which is then set to MazeGrid.PATH.
+ * The work is proportional to the size of the grid, but it is done in a
+ * single pass with no extra memory, and every square is looked at only a
+ * few times.
+ */
+public class DeadEndFillingSolver extends AbstractMazeSolver {
+
+	public String getName() {
+		return "deadend";
+	}
+
+
+	protected boolean search(MazeGrid grid, int start, int goal) {
+		int[] offset = offsets(grid);
+		int squares = grid.getRows() * grid.getColumns();
+		int cols = grid.getColumns();
+		for (int i = cols; i < squares - cols; i++) {
+			int square = i;
+			// Fill in a corridor, starting from a dead end, until reaching a junction.
+			while (square != start && square != goal && grid.get(square) == MazeGrid.OPEN) {
+				int exits = 0;
+				int exit = -1;
+				for (int dir = 0; dir < 4; dir++) {
+					if (grid.get(square + offset[dir]) == MazeGrid.OPEN) {
+						exits++;
+						exit = square + offset[dir];
+					}
+				}
+				if (exits > 1)
+					break;
+				expand(grid, square);
+				mark(grid, square, MazeGrid.VISITED);
+				if (exit == -1)
+					break;
+				square = exit;
+			}
+		}
+		// Follow the remaining open squares from the start to the goal.
+		if (grid.get(start) != MazeGrid.OPEN || grid.get(goal) != MazeGrid.OPEN)
+			return false;
+		int square = start;
+		int length = 1;
+		mark(grid, start, MazeGrid.PATH);
+		while (square != goal) {
+			int next = -1;
+			for (int dir = 0; dir < 4 && next == -1; dir++)
+				if (grid.get(square + offset[dir]) == MazeGrid.OPEN)
+					next = square + offset[dir];
+			if (next == -1)
+				return false;  // the maze has loops, or the goal can't be reached
+			expand(grid, square);
+			mark(grid, next, MazeGrid.PATH);
+			square = next;
+			length++;
+		}
+		pathLength = length;
+		return true;
+	}
+
+}
@@ -0,0 +1,67 @@
+import java.util.Arrays;
+
+/**
+ * A maze solver that does the same depth-first search as MazeSolver.recurse(),
+ * trying the neighbors of each square in the order right, up, down, left,
+ * and leaving the same trail in the grid: squares on the current path are
+ * set to MazeGrid.PATH (red) and dead ends are set to MazeGrid.VISITED (yellow).
+ * Instead of using one method call per square, the search keeps the current
+ * path on an explicit stack of square indexes, so it can follow corridors of
+ * any length without running out of stack space.  The memory that it uses is
+ * proportional to the length of the longest path that it explores.
+ * The path that it finds is not necessarily the shortest one.  As in recurse(),
+ * the goal square itself is not marked.
+ */
+public class DepthFirstSolver extends AbstractMazeSolver {
+
+	private int[] stack = new int[64];    // indexes of the squares on the current path, from the start.
+	private byte[] tried = new byte[64];  // for each square on the path, how many of its neighbors have been tried.
+
+
+	public String getName() {
+		return "dfs";
+	}
+
+
+	protected boolean search(MazeGrid grid, int start, int goal) {
+		int[] offset = offsets(grid);
+		int top = 0;  // number of squares on the stack
+		stack[top] = start;
+		tried[top] = 0;
+		top++;
+		if (start != goal)
+			expand(grid, start);
+		while (top > 0) {
+			int square = stack[top-1];
+			if (square == goal) {
+				pathLength = top;
+				return true;
+			}
+			int dir = tried[top-1];
+			if (dir == 4) {
+				// All neighbors have been tried; back up, marking this square as a
+				// dead end (except for the start, which the recursion never marked).
+				top--;
+				if (top > 0)
+					mark(grid, square, MazeGrid.VISITED);
+				continue;
+			}
+			tried[top-1] = (byte)(dir + 1);
+			int next = square + offset[dir];
+			if (grid.get(next) == MazeGrid.OPEN) {
+				mark(grid, square, MazeGrid.PATH);
+				if (top == stack.length) {
+					stack = Arrays.copyOf(stack, 2*top);
+					tried = Arrays.copyOf(tried, 2*top);
+				}
+				stack[top] = next;
+				tried[top] = 0;
+				top++;
+				if (next != goal)
+					expand(grid, next);
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,338 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A FractalTileCache draws the self-similar fractals -- the Koch curve, the
+ * square curve and the Sierpinski triangle -- by stamping images of smaller
+ * copies of the shape, instead of drawing every line.  A Koch curve of level n
+ * is four Koch curves of level n-1, which only come in a few different
+ * directions, so the recursive method draws the same small curve thousands of
+ * times.  Here, each different piece, identified by its shape, level, size,
+ * heading, color, line width and position within a pixel, is drawn only
+ * once, into a transparent image, and the image for the next level up is made
+ * by drawing the images of its pieces into it at the right places.  Pieces of a few hundred lines are
+ * drawn with lines, using the recursive methods.  So the work for a deep level
+ * grows with the number of levels and the size of the picture, instead of
+ * exponentially.
+ * <p>The images are kept between drawings, so the same fractal in the same
+ * place is drawn almost for free the next time, even at a different position.
+ * The cache has a limit on the number of bytes of image data that it holds;
+ * when the limit is passed, the images that were used least recently are
+ * dropped.
+ * <p>Each piece is drawn for the position of its starting point within a pixel,
+ * to the nearest sixteenth of a pixel, and the images are stamped at whole-pixel
+ * positions, so the lines end up on nearly the same pixels as the lines that
+ * the turtle would draw.  A few lines can still be off by a pixel, where an end
+ * is very close to a pixel boundary.  Lines drawn this way are not sent to
+ * segment listeners or added to a recording.  For example:
+ * <pre>
+ *    FractalTileCache cache = new FractalTileCache(64 * 1024 * 1024);
+ *    cache.draw(turtle, ParallelFractals.KOCH, 20, 12);
+ * </pre>
+ */
+public class FractalTileCache {
+
+	/**
+	 * For each shape code, the highest level of a piece that is drawn with lines.
+	 * These are pieces of a few hundred lines.  Since each piece is drawn once for
+	 * every position within a pixel that it starts at, larger pieces would cost more
+	 * to draw than stamping saves.
+	 */
+	private static final int[] LINE_LEVEL = { 4, 3, 0, 0, 5 };
+
+	/**
+	 * The position of a piece within a pixel is rounded to a multiple of
+	 * 1/SUBPIXELS of a pixel.
+	 */
+	private static final int SUBPIXELS = 16;
+
+	private final long maxBytes;
+	private long bytes;   // total size of the images in the cache
+	private final LinkedHashMap<Key,Tile> tiles = new LinkedHashMap<Key,Tile>(64, 0.75f, true);
+
+
+	/**
+	 * Create an empty cache.
+	 * @param maxBytes the largest number of bytes of image data that the cache
+	 *    holds.  Each pixel takes four bytes.
+	 */
+	public FractalTileCache(long maxBytes) {
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("The cache size must be positive.");
+		this.maxBytes = maxBytes;
+	}
+
+
+	/**
+	 * Returns the number of bytes of image data in the cache.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of images in the cache.
+	 */
+	public synchronized int size() {
+		return tiles.size();
+	}
+
+	/**
+	 * Removes all of the images from the cache.
+	 */
+	public synchronized void clear() {
+		tiles.clear();
+		bytes = 0;
+	}
+
+
+	/**
+	 * Draws one of the shapes on a TurtlePanel, in the turtle's color and line width,
+	 * starting at the turtle's position and heading, and then moves the turtle to
+	 * where TurtleGraphics or SierpinskiTurtle would leave it.  The turtle's pen
+	 * should be down.
+	 * @param shape ParallelFractals.KOCH, ParallelFractals.SQUARE or ParallelFractals.SIERPINSKI.
+	 */
+	public void draw(TurtlePanel turtle, int shape, double size, int level) {
+		if (shape != ParallelFractals.KOCH && shape != ParallelFractals.SQUARE && shape != ParallelFractals.SIERPINSKI)
+			throw new IllegalArgumentException("Only the Koch, square and Sierpinski shapes can be cached: " + shape);
+		if (level < 0)
+			throw new IllegalArgumentException("The level can't be negative.");
+		double scale = shape == ParallelFractals.SIERPINSKI ? 2 : 3;
+		while (level > 0 && size / Math.pow(scale, level - 1) < turtle.getDetailSize())
+			level--;  // Pieces at the level above are already too small to show any detail.
+		int width = turtle.getCanvasWidth();
+		int height = turtle.getCanvasHeight();
+		double px = (0.5 + turtle.getTurtleX() / 20.0)*width;
+		double py = (0.5 - turtle.getTurtleY() / 20.0)*height;
+		int x = pixel(px);
+		int y = pixel(py);
+		Key key = new Key(shape, level, size, turtle.getHeading(), turtle.getColor().getRGB(),
+				(float)turtle.getLineWidth(), width / 20.0, height / 20.0, subpixel(px), subpixel(py));
+		Tile tile;
+		synchronized(this) {
+			tile = get(key);
+		}
+		turtle.drawImage(tile.image, x - tile.originX, y - tile.originY);
+		if (shape != ParallelFractals.SIERPINSKI) {
+			turtle.penUp();
+			turtle.forward(size);
+			turtle.penDown();
+		}
+	}
+
+
+	/**
+	 * Returns the image for a piece, making it and its pieces if they are not in the cache.
+	 */
+	private Tile get(Key key) {
+		Tile tile = tiles.get(key);
+		if (tile != null)
+			return tile;
+		if (key.level <= LINE_LEVEL[key.shape])
+			tile = drawLines(key);
+		else
+			tile = stamp(key);
+		tiles.put(key, tile);
+		bytes += tile.bytes();
+		Iterator<Tile> eldest = tiles.values().iterator();
+		while (bytes > maxBytes && tiles.size() > 1) {
+			bytes -= eldest.next().bytes();
+			eldest.remove();
+		}
+		return tile;
+	}
+
+	/**
+	 * Makes the image for a piece by drawing its lines.
+	 */
+	private Tile drawLines(Key key) {
+		SegmentTurtle turtle = new SegmentTurtle(0, 0, key.heading);
+		turtle.color(new Color(key.color, true));
+		turtle.lineWidth(key.width);
+		if (key.shape == ParallelFractals.KOCH)
+			TurtleGraphics.koch(turtle, key.size, key.level);
+		else if (key.shape == ParallelFractals.SQUARE)
+			TurtleGraphics.square(turtle, key.size, key.level);
+		else
+			SierpinskiTurtle.sierpinskiTriangle(turtle, key.size, key.level);
+		SegmentBuffer segments = turtle.getSegments();
+		double sx = key.pixelsPerUnitX, sy = -key.pixelsPerUnitY;
+		double fx = (double)key.subpixelX / SUBPIXELS;  // where the piece starts, within its first pixel
+		double fy = (double)key.subpixelY / SUBPIXELS;
+		double minX = 0, maxX = 1, minY = 0, maxY = 1;
+		for (int i = 0; i < segments.size(); i++) {
+			minX = Math.min(minX, fx + Math.min(segments.getX1(i), segments.getX2(i)) * sx);
+			maxX = Math.max(maxX, fx + Math.max(segments.getX1(i), segments.getX2(i)) * sx);
+			minY = Math.min(minY, fy + Math.max(segments.getY1(i), segments.getY2(i)) * sy);
+			maxY = Math.max(maxY, fy + Math.min(segments.getY1(i), segments.getY2(i)) * sy);
+		}
+		int margin = (int)Math.ceil(key.width / 2) + 2;  // room for the width of the lines and antialiasing
+		int originX = margin - (int)Math.floor(minX);
+		int originY = margin - (int)Math.floor(minY);
+		BufferedImage image = new BufferedImage(originX + (int)Math.ceil(maxX) + margin,
+				originY + (int)Math.ceil(maxY) + margin, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setColor(new Color(key.color, true));
+		g.setStroke(TurtlePanel.stroke(key.width));
+		for (int i = 0; i < segments.size(); i++) {
+			g.drawLine( (int)(originX + fx + segments.getX1(i) * sx), (int)(originY + fy + segments.getY1(i) * sy),
+					(int)(originX + fx + segments.getX2(i) * sx), (int)(originY + fy + segments.getY2(i) * sy) );
+		}
+		g.dispose();
+		return new Tile(image, originX, originY);
+	}
+
+	/**
+	 * Makes the image for a piece by stamping the images of the pieces that it is
+	 * made of, at the places where the recursive method would draw them.  The part
+	 * of each piece's position that is less than a pixel goes into the key for that
+	 * piece, so the pieces themselves can be stamped at whole pixels.
+	 */
+	private Tile stamp(Key key) {
+		int count;
+		double[] headings;   // heading of each piece
+		double[] dx, dy;     // starting point of each piece, relative to the start of this one
+		if (key.shape == ParallelFractals.SIERPINSKI) {
+			count = 3;
+			double half = key.size / 2;
+			headings = new double[] { key.heading, key.heading, key.heading };
+			dx = new double[] { 0, unitX(key.heading) * half, unitX(key.heading + 60) * half };
+			dy = new double[] { 0, unitY(key.heading) * half, unitY(key.heading + 60) * half };
+		}
+		else {
+			// The pieces are drawn one after the other, turning between them.
+			double[] turns = key.shape == ParallelFractals.KOCH ? new double[] { 0, 60, -120, 60 }
+					: new double[] { 0, 90, -90, -90, 90 };
+			count = turns.length;
+			double third = key.size / 3;
+			headings = new double[count];
+			dx = new double[count];
+			dy = new double[count];
+			double x = 0, y = 0, heading = key.heading;
+			for (int i = 0; i < count; i++) {
+				heading += turns[i];
+				headings[i] = heading;
+				dx[i] = x;
+				dy[i] = y;
+				x += unitX(heading) * third;
+				y += unitY(heading) * third;
+			}
+		}
+		double pieceSize = key.shape == ParallelFractals.SIERPINSKI ? key.size / 2 : key.size / 3;
+		Tile[] pieces = new Tile[count];
+		int[] left = new int[count];
+		int[] top = new int[count];
+		int minX = 0, maxX = 0, minY = 0, maxY = 0;
+		for (int i = 0; i < count; i++) {
+			double px = (double)key.subpixelX / SUBPIXELS + dx[i] * key.pixelsPerUnitX;
+			double py = (double)key.subpixelY / SUBPIXELS - dy[i] * key.pixelsPerUnitY;
+			pieces[i] = get(new Key(key.shape, key.level - 1, pieceSize, headings[i], key.color, key.width,
+					key.pixelsPerUnitX, key.pixelsPerUnitY, subpixel(px), subpixel(py)));
+			left[i] = pixel(px) - pieces[i].originX;
+			top[i] = pixel(py) - pieces[i].originY;
+			if (i == 0 || left[i] < minX)
+				minX = left[i];
+			if (i == 0 || top[i] < minY)
+				minY = top[i];
+			maxX = Math.max(maxX, left[i] + pieces[i].image.getWidth());
+			maxY = Math.max(maxY, top[i] + pieces[i].image.getHeight());
+		}
+		BufferedImage image = new BufferedImage(maxX - minX, maxY - minY, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		for (int i = 0; i < count; i++)
+			g.drawImage(pieces[i].image, left[i] - minX, top[i] - minY, null);
+		g.dispose();
+		return new Tile(image, -minX, -minY);
+	}
+
+	/**
+	 * Returns the pixel that contains a pixel coordinate, after the coordinate is
+	 * rounded to a multiple of 1/SUBPIXELS.
+	 */
+	private static int pixel(double p) {
+		return (int)Math.floor(Math.round(p * SUBPIXELS) / (double)SUBPIXELS);
+	}
+
+	/**
+	 * Returns the position of a pixel coordinate within its pixel, in units of
+	 * 1/SUBPIXELS of a pixel, from 0 to SUBPIXELS-1.
+	 */
+	private static int subpixel(double p) {
+		return (int)(Math.round(p * SUBPIXELS) - (long)pixel(p) * SUBPIXELS);
+	}
+
+	private static double unitX(double heading) {
+		int i = TurtlePanel.headingIndex(heading);
+		return i >= 0 ? TurtlePanel.UNIT_X[i] : Math.cos(heading / 180 * Math.PI);
+	}
+
+	private static double unitY(double heading) {
+		int i = TurtlePanel.headingIndex(heading);
+		return i >= 0 ? TurtlePanel.UNIT_Y[i] : Math.sin(heading / 180 * Math.PI);
+	}
+
+
+	/**
+	 * An image of a piece, with the pixel where the piece starts.
+	 */
+	private static class Tile {
+		final BufferedImage image;
+		final int originX, originY;
+		Tile(BufferedImage image, int originX, int originY) {
+			this.image = image;
+			this.originX = originX;
+			this.originY = originY;
+		}
+		long bytes() {
+			return 4L * image.getWidth() * image.getHeight();
+		}
+	}
+
+	/**
+	 * Everything that the image of a piece depends on.
+	 */
+	private static class Key {
+		final int shape, level;
+		final double size, heading;   // heading is from 0 up to 360
+		final int color;
+		final float width;
+		final double pixelsPerUnitX, pixelsPerUnitY;
+		final int subpixelX, subpixelY;  // position of the start within a pixel, in units of 1/SUBPIXELS
+		Key(int shape, int level, double size, double heading, int color, float width,
+				double pixelsPerUnitX, double pixelsPerUnitY, int subpixelX, int subpixelY) {
+			heading %= 360;
+			if (heading < 0)
+				heading += 360;
+			this.shape = shape;
+			this.level = level;
+			this.size = size;
+			this.heading = heading;
+			this.color = color;
+			this.width = width;
+			this.pixelsPerUnitX = pixelsPerUnitX;
+			this.pixelsPerUnitY = pixelsPerUnitY;
+			this.subpixelX = subpixelX;
+			this.subpixelY = subpixelY;
+		}
+		public boolean equals(Object obj) {
+			if ( ! (obj instanceof Key) )
+				return false;
+			Key k = (Key)obj;
+			return shape == k.shape && level == k.level && size == k.size && heading == k.heading
+					&& color == k.color && width == k.width
+					&& pixelsPerUnitX == k.pixelsPerUnitX && pixelsPerUnitY == k.pixelsPerUnitY
+					&& subpixelX == k.subpixelX && subpixelY == k.subpixelY;
+		}
+		public int hashCode() {
+			long h = Double.doubleToLongBits(size) * 31 + Double.doubleToLongBits(heading);
+			h = h * 31 + Double.doubleToLongBits(pixelsPerUnitX) * 7 + Double.doubleToLongBits(pixelsPerUnitY);
+			h = h * 31 + subpixelX * SUBPIXELS + subpixelY;
+			return (int)(h ^ (h >>> 32)) * 31 + ((shape * 31 + level) * 31 + color) * 31 + Float.floatToIntBits(width);
+		}
+	}
+
+}
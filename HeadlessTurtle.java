@@ -0,0 +1,356 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A HeadlessTurtle is a turtle that draws onto an image instead of a window,
+ * so it can be used on a machine without a display (run the program with
+ * -Djava.awt.headless=true), for example to make PNG files of fractals.  It has
+ * the same drawing commands as TurtlePanel and the same coordinate system, with x
+ * from -10 at the left to 10 at the right and y from -10 at the bottom to 10 at
+ * the top, and it draws exactly the same lines, but it never calls repaint()
+ * and never delays.  It also counts the lines that it draws, so that it can
+ * report how many segments per second it draws.
+ */
+public class HeadlessTurtle implements Turtle {
+
+	private final BufferedImage canvas;
+	private final Graphics2D g;
+
+	private double turtleX, turtleY;   // Location of the turtle.
+	private double facing;             // What direction the turtle is facing, in degrees.
+	private int headingIndex;          // Index in TurtlePanel.UNIT_X and UNIT_Y for facing, or -1.
+	private boolean penIsUp;
+	private double lineWidth = 1;
+	private double detailThreshold;  // Size in pixels below which shapes are not drawn in detail.
+
+	private long segmentCount;   // Number of lines drawn since the turtle was created or cleared.
+	private long startTime;      // Value of System.nanoTime() when the first of those lines was drawn.
+
+
+	/**
+	 * Create a HeadlessTurtle with a 600-by-600 image, the same as a default TurtlePanel.
+	 */
+	public HeadlessTurtle() {
+		this(600, 600);
+	}
+
+	/**
+	 * Create a HeadlessTurtle that draws on an image of a given size, in pixels.
+	 * As in TurtlePanel, the image starts out white, and the turtle is at (0,0),
+	 * facing right, drawing red lines of width 1.
+	 */
+	public HeadlessTurtle(int width, int height) {
+		this(whiteImage(width, height));
+	}
+
+	/**
+	 * Create a HeadlessTurtle that draws on top of an existing image, which is
+	 * not cleared.  The turtle is at (0,0), facing right, drawing red lines of
+	 * width 1.  The coordinate system is stretched over the whole image.
+	 */
+	public HeadlessTurtle(BufferedImage image) {
+		if (image == null)
+			throw new IllegalArgumentException("The image can't be null.");
+		canvas = image;
+		g = canvas.createGraphics();
+		g.setColor(Color.RED);
+		g.setFont( new Font("Serif", Font.PLAIN, 14) );
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+	}
+
+
+	private static BufferedImage whiteImage(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("The image size must be positive: " + width + "x" + height);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		g.dispose();
+		return image;
+	}
+
+
+	/**
+	 * Returns the image that the turtle draws on.
+	 */
+	public BufferedImage getImage() {
+		return canvas;
+	}
+
+	/**
+	 * Writes the picture to a file in PNG format.
+	 */
+	public void writePng(File file) throws IOException {
+		if ( ! ImageIO.write(canvas, "png", file) )
+			throw new IOException("No PNG writer is available.");
+	}
+
+	/**
+	 * Returns the number of lines that have been drawn since the turtle was created
+	 * or the picture was cleared.
+	 */
+	public long getSegmentCount() {
+		return segmentCount;
+	}
+
+	/**
+	 * Returns the number of lines drawn per second, counting from when the first
+	 * line was drawn after the turtle was created or the picture was cleared.
+	 */
+	public double getSegmentsPerSecond() {
+		if (segmentCount == 0)
+			return 0;
+		long elapsed = System.nanoTime() - startTime;
+		return segmentCount / (Math.max(elapsed, 1) / 1e9);
+	}
+
+
+	private void go(double x, double y) {
+		if ( ! penIsUp ) {
+			if (segmentCount++ == 0)
+				startTime = System.nanoTime();
+			int width = canvas.getWidth();
+			int height = canvas.getHeight();
+			g.drawLine( (int)((0.5 + turtleX / 20.0)*width), (int)((0.5 - turtleY / 20.0)*height),
+					(int)((0.5 + x / 20.0)*width), (int)((0.5 - y / 20.0)*height) );
+		}
+		turtleX = x;
+		turtleY = y;
+	}
+
+	public void forward(double distance) {
+		if (headingIndex >= 0)
+			go(turtleX + TurtlePanel.UNIT_X[headingIndex] * distance, turtleY + TurtlePanel.UNIT_Y[headingIndex] * distance);
+		else {
+			double rad = facing / 180 * Math.PI;
+			go(turtleX + Math.cos(rad) * distance, turtleY + Math.sin(rad) * distance);
+		}
+	}
+
+	public void back(double distance) {
+		forward(-distance);
+	}
+
+	public void move(double dx, double dy) {
+		go(turtleX + dx, turtleY + dy);
+	}
+
+	public void moveTo(double x, double y) {
+		go(x, y);
+	}
+
+	public void turn(double angle) {
+		facing += angle;
+		headingIndex = TurtlePanel.headingIndex(facing);
+	}
+
+	public void face(double angle) {
+		facing = angle;
+		headingIndex = TurtlePanel.headingIndex(facing);
+	}
+
+	/**
+	 * Move the turtle to (0,0), facing right, and reset the color and line width
+	 * to red and 1, as in TurtlePanel.
+	 */
+	public void home() {
+		go(0, 0);
+		face(0);
+		color(Color.RED);
+		lineWidth(1);
+	}
+
+	public void penUp() {
+		penIsUp = true;
+	}
+
+	public void penDown() {
+		penIsUp = false;
+	}
+
+	public void color(Color c) {
+		if (c == null)
+			c = Color.BLACK;
+		g.setColor(c);
+	}
+
+	public void randomColor() {
+		float hue = (float)Math.random();
+		color(Color.getHSBColor(hue, 1, 1));
+	}
+
+	public void lineWidth(double width) {
+		if (width < 1)
+			width = 1;
+		lineWidth = width;
+		g.setStroke(TurtlePanel.stroke(width));
+	}
+
+	/**
+	 * Draws a string along the direction that the turtle is facing, and moves the
+	 * turtle to the end of it, as in TurtlePanel.string().
+	 */
+	public void string(String str) {
+		Graphics2D g2 = (Graphics2D)g.create();
+		int x = (int)((0.5 + turtleX / 20.0)*canvas.getWidth());
+		int y = (int)((0.5 - turtleY / 20.0)*canvas.getHeight());
+		double rad = facing / 180 * Math.PI;
+		double forward = g2.getFontMetrics().stringWidth(str) / (double)canvas.getWidth() * 20.0;
+		g2.translate(x, y);
+		g2.rotate(-rad);
+		g2.drawString(str, 0, 0);
+		g2.dispose();
+		turtleX += Math.cos(rad) * forward;
+		turtleY += Math.sin(rad) * forward;
+	}
+
+	/**
+	 * Sets the font that is used by string().  The default is a 14-point serif font.
+	 */
+	public void font(Font f) {
+		g.setFont(f);
+	}
+
+	/**
+	 * Releases the graphics context that the turtle draws with.  The turtle can't
+	 * draw after this is called, but the image can still be used.
+	 */
+	public void dispose() {
+		g.dispose();
+	}
+
+	/**
+	 * Fills the picture with white, and resets the segment count.
+	 */
+	public void clear() {
+		Color c = g.getColor();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		g.setColor(c);
+		segmentCount = 0;
+	}
+
+	/**
+	 * Draws the segments in a buffer, such as one made by ParallelFractals, in
+	 * the same way as TurtlePanel.drawSegments().
+	 */
+	public void drawSegments(SegmentBuffer segments) {
+		int n = segments.size();
+		if (n > 0 && segmentCount == 0)
+			startTime = System.nanoTime();
+		Color startColor = g.getColor();
+		int width = canvas.getWidth();
+		int height = canvas.getHeight();
+		int currentColor = startColor.getRGB();
+		float currentWidth = (float)lineWidth;
+		for (int i = 0; i < n; i++) {
+			int c = segments.getColor(i);
+			if (c == SegmentBuffer.INHERITED_COLOR)
+				c = startColor.getRGB();
+			if (c != currentColor) {
+				currentColor = c;
+				g.setColor(new Color(c, true));
+			}
+			float w = segments.getWidth(i);
+			if (w != w)
+				w = (float)lineWidth;
+			if (w != currentWidth) {
+				currentWidth = w;
+				g.setStroke(TurtlePanel.stroke(w));
+			}
+			g.drawLine( (int)((0.5 + segments.getX1(i) / 20.0)*width), (int)((0.5 - segments.getY1(i) / 20.0)*height),
+					(int)((0.5 + segments.getX2(i) / 20.0)*width), (int)((0.5 - segments.getY2(i) / 20.0)*height) );
+		}
+		segmentCount += n;
+		g.setColor(startColor);
+		g.setStroke(TurtlePanel.stroke(lineWidth));
+		if (segments.getFinalColor() != SegmentBuffer.INHERITED_COLOR)
+			color(new Color(segments.getFinalColor(), true));
+		if (segments.getFinalWidth() == segments.getFinalWidth())
+			lineWidth(segments.getFinalWidth());
+	}
+
+	public double getTurtleX() {
+		return turtleX;
+	}
+
+	public double getTurtleY() {
+		return turtleY;
+	}
+
+	public double getHeading() {
+		return facing;
+	}
+
+	/**
+	 * Returns the number of turtle units in one pixel of the image, as in TurtlePanel.
+	 */
+	public double getUnitsPerPixel() {
+		return 20.0 / Math.max(canvas.getWidth(), canvas.getHeight());
+	}
+
+	/**
+	 * Sets the size, in pixels, below which shapes are not drawn in detail, as in
+	 * TurtlePanel.setDetailThreshold().  The default is 0.
+	 */
+	public void setDetailThreshold(double pixels) {
+		if (pixels < 0)
+			throw new IllegalArgumentException("The detail threshold can't be negative.");
+		detailThreshold = pixels;
+	}
+
+	public double getDetailSize() {
+		return detailThreshold * getUnitsPerPixel();
+	}
+
+
+	/**
+	 * Renders the pictures from TurtleGraphics and SierpinskiTurtle to PNG files,
+	 * without opening a window, and prints the number of segments per second for each.
+	 * <p>Usage:  java -Djava.awt.headless=true HeadlessTurtle [size] [directory]
+	 * <br>where size is the width and height of the images in pixels (default 600)
+	 * and directory is where the files are written (default the current directory).
+	 */
+	public static void main(String[] args) throws IOException {
+		int size = 600;
+		File dir = new File(".");
+		if (args.length > 0)
+			size = Integer.parseInt(args[0]);
+		if (args.length > 1)
+			dir = new File(args[1]);
+		String[] names = { "koch", "square", "tree", "randomtree", "sierpinski" };
+		for (String name : names) {
+			HeadlessTurtle turtle = new HeadlessTurtle(size, size);
+			turtle.penUp();
+			if (name.equals("koch") || name.equals("square"))
+				turtle.moveTo(-10, 0);
+			else if (name.equals("sierpinski"))
+				turtle.moveTo(-8, -6);
+			else {
+				turtle.moveTo(0, -9);
+				turtle.face(90);
+			}
+			turtle.penDown();
+			if (name.equals("koch"))
+				TurtleGraphics.koch(turtle, 20, 8);
+			else if (name.equals("square"))
+				TurtleGraphics.square(turtle, 20, 6);
+			else if (name.equals("tree"))
+				TurtleGraphics.Tree(turtle, 18, 10);
+			else if (name.equals("randomtree"))
+				TurtleGraphics.randomTree(turtle, 20, 9);
+			else
+				SierpinskiTurtle.sierpinskiTriangle(turtle, 16, 9);
+			double rate = turtle.getSegmentsPerSecond();
+			File file = new File(dir, name + ".png");
+			turtle.writePng(file);
+			System.out.printf("%s: %d segments, %.0f segments/sec%n", file, turtle.getSegmentCount(), rate);
+		}
+	}
+
+}
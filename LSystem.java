@@ -0,0 +1,199 @@
+/**
+ * An LSystem draws a curve that is defined by a Lindenmayer system:  a starting
+ * string, called the axiom, and rules that say how each symbol is replaced by a
+ * string of symbols to go one level deeper.  After the replacements have been
+ * done depth times, the symbols are read as turtle commands:
+ * <ul>
+ * <li>F or G -- move forward one step, drawing a line.
+ * <li>f -- move forward one step without drawing.
+ * <li>+ -- turn left by the angle of the system.
+ * <li>- -- turn right by the angle of the system.
+ * </ul>
+ * Any other symbol is just a placeholder for the rules, and is ignored when drawing.
+ * <p>The expanded string is never built.  Its symbols are produced one at a
+ * time, with a stack that holds one rule string and a position in it for each
+ * level, so a curve of any depth is drawn in memory proportional to the depth.
+ * The angle must divide 360 evenly, so the turtle can only face in 360/angle
+ * directions.  The heading is kept as an integer index into a table of the
+ * steps in each of those directions, which is computed once per drawing, so
+ * no sines or cosines are computed while the curve is drawn.  Consecutive
+ * steps in the same direction are combined into one line.
+ * <p>The static methods koch(), square() and sierpinski() make L-systems for
+ * the curves that are drawn recursively in TurtleGraphics and SierpinskiTurtle.
+ */
+public class LSystem {
+
+	private final String axiom;
+	private final double angle;   // the turning angle, in degrees.
+	private final double scale;   // the step length shrinks by this factor at each level.
+	private final String[] rules = new String[128];  // the replacement for each ASCII symbol, or null.
+
+
+	/**
+	 * Create an L-system with no rules.
+	 * @param axiom the string that the curve starts from.
+	 * @param angle the angle, in degrees, for the + and - symbols.  It must divide
+	 *    360 evenly; for example, 60, 90 and 120 are allowed, but 50 is not.
+	 * @param scale the factor by which the length of a step shrinks each time the
+	 *    depth goes up by one, so that a curve of a given size at any depth covers
+	 *    about the same area.  For the Koch curve, this is 3.
+	 */
+	public LSystem(String axiom, double angle, double scale) {
+		if (axiom == null)
+			throw new IllegalArgumentException("The axiom can't be null.");
+		double directions = 360 / angle;
+		if (!(angle > 0 && angle <= 360) || Math.abs(directions - Math.rint(directions)) > 1e-9)
+			throw new IllegalArgumentException("The angle must divide 360 evenly: " + angle);
+		if (scale <= 0)
+			throw new IllegalArgumentException("The scale must be positive.");
+		this.axiom = axiom;
+		this.angle = angle;
+		this.scale = scale;
+	}
+
+
+	/**
+	 * Adds a rule that replaces a symbol by a string of symbols at each level.
+	 * A symbol that has no rule stays the same.
+	 */
+	public void addRule(char symbol, String replacement) {
+		if (symbol >= rules.length)
+			throw new IllegalArgumentException("Only ASCII symbols can have rules: " + symbol);
+		rules[symbol] = replacement;
+	}
+
+
+	/**
+	 * Returns the L-system for the Koch curve drawn by TurtleGraphics.koch().
+	 */
+	public static LSystem koch() {
+		LSystem koch = new LSystem("F", 60, 3);
+		koch.addRule('F', "F+F--F+F");
+		return koch;
+	}
+
+	/**
+	 * Returns the L-system for the curve drawn by TurtleGraphics.square().
+	 */
+	public static LSystem square() {
+		LSystem square = new LSystem("F", 90, 3);
+		square.addRule('F', "F+F-F-F+F");
+		return square;
+	}
+
+	/**
+	 * Returns an L-system for the Sierpinski triangle drawn by SierpinskiTurtle.
+	 * As there, the triangle lies to the left of the turtle, with its lower left
+	 * corner at the starting point, and the turtle ends up where it started.  The
+	 * lines are drawn in a different order, but the picture is the same.
+	 */
+	public static LSystem sierpinski() {
+		LSystem sierpinski = new LSystem("F+G+G+", 120, 2);
+		sierpinski.addRule('F', "F+G-F-G+F");
+		sierpinski.addRule('G', "GG");
+		return sierpinski;
+	}
+
+
+	/**
+	 * Draws the curve with a turtle, starting at the turtle's position and heading.
+	 * The lines are drawn with turtle.move(), so the turtle's heading does not
+	 * change while the curve is drawn; at the end, the turtle is turned to the
+	 * direction that the curve ends in.  The turtle's pen should be down.  If the
+	 * turtle has a detail size (see Turtle.getDetailSize()), the depth is lowered
+	 * so that no detail smaller than that is drawn.
+	 * @param size the length of one step at depth zero.  At depth n, a step is
+	 *    size divided by scale to the power n.
+	 * @param depth the number of times the rules are applied.
+	 */
+	public void draw(Turtle turtle, double size, int depth) {
+		if (depth < 0)
+			throw new IllegalArgumentException("The depth can't be negative.");
+		double detail = turtle.getDetailSize();
+		while (depth > 0 && size / Math.pow(scale, depth - 1) < detail)
+			depth--;  // Steps at the level above are already too small to show any detail.
+		int directions = (int)Math.rint(360 / angle);
+		double step = size / Math.pow(scale, depth);
+		double[] dx = new double[directions];
+		double[] dy = new double[directions];
+		double start = turtle.getHeading();
+		for (int i = 0; i < directions; i++) {
+			double rad = (start + i*angle) / 180 * Math.PI;
+			dx[i] = snap(Math.cos(rad)) * step;
+			dy[i] = snap(Math.sin(rad)) * step;
+		}
+		String[] strings = new String[depth+1];  // the string being read at each level
+		int[] positions = new int[depth+1];      // the position of the next symbol in it
+		strings[0] = axiom;
+		int top = 0;
+		int heading = 0;    // index into dx and dy
+		int steps = 0;      // number of steps taken in the current direction, but not yet drawn
+		boolean drawing = true;  // whether those steps draw a line
+		while (top >= 0) {
+			String s = strings[top];
+			int pos = positions[top];
+			if (pos == s.length()) {
+				top--;
+				continue;
+			}
+			positions[top] = pos + 1;
+			char c = s.charAt(pos);
+			String replacement = c < rules.length ? rules[c] : null;
+			if (replacement != null && top < depth) {
+				top++;
+				strings[top] = replacement;
+				positions[top] = 0;
+				continue;
+			}
+			switch (c) {
+			case 'F':
+			case 'G':
+			case 'f':
+				boolean draws = c != 'f';
+				if (steps > 0 && draws != drawing) {
+					move(turtle, steps*dx[heading], steps*dy[heading], drawing);
+					steps = 0;
+				}
+				drawing = draws;
+				steps++;
+				break;
+			case '+':
+			case '-':
+				if (steps > 0) {
+					move(turtle, steps*dx[heading], steps*dy[heading], drawing);
+					steps = 0;
+				}
+				if (c == '+')
+					heading = heading + 1 == directions ? 0 : heading + 1;
+				else
+					heading = heading == 0 ? directions - 1 : heading - 1;
+				break;
+			}
+		}
+		if (steps > 0)
+			move(turtle, steps*dx[heading], steps*dy[heading], drawing);
+		if (heading != 0)
+			turtle.turn(heading*angle);
+	}
+
+	private static void move(Turtle turtle, double dx, double dy, boolean drawing) {
+		if (drawing)
+			turtle.move(dx, dy);
+		else {
+			turtle.penUp();
+			turtle.move(dx, dy);
+			turtle.penDown();
+		}
+	}
+
+	private static double snap(double value) {
+		// Values that should be exactly 0, 1/2 or 1, such as cos(90 degrees) or
+		// sin(30 degrees), come out slightly off; put them back where they belong,
+		// so that lines that should be straight stay straight.
+		double half = Math.rint(2*value) / 2;
+		if (Math.abs(value - half) < 1e-12)
+			return half;
+		return value;
+	}
+
+}
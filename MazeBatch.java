@@ -0,0 +1,166 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A program that measures how fast mazes can be created and solved, by
+ * creating and solving many independent mazes in parallel on all of the
+ * available processors.  No window is used.  For each maze size, it reports
+ * the number of mazes per second, the median (p50) and 99th percentile (p99)
+ * time to create and solve one maze, and the number of bytes allocated per
+ * maze.  Every maze is also checked to make sure that it was solved, so the
+ * program can be used as a quick regression test.
+ * <p>Usage:  java MazeBatch [count] [algorithm] [size...]
+ * <br>where count is the number of mazes of each size (default 1000),
+ * algorithm is one of the names accepted by MazeSolver.createAlgorithm()
+ * (default "dfs"), and each size is either a single number for a square maze
+ * or ROWSxCOLS (default 121x161, the size of the default MazePanel).
+ */
+public class MazeBatch {
+
+	public static void main(String[] args) {
+		int count = 1000;
+		String algorithm = "dfs";
+		if (args.length > 0)
+			count = Integer.parseInt(args[0]);
+		if (args.length > 1)
+			algorithm = args[1];
+		MazeSolver.createAlgorithm(algorithm);  // check the name before starting
+		String[] sizes = { "121x161" };
+		if (args.length > 2)
+			sizes = Arrays.copyOfRange(args, 2, args.length);
+		ForkJoinPool pool = new ForkJoinPool();
+		System.out.println(count + " mazes per size, algorithm " + algorithm
+				+ ", " + pool.getParallelism() + " threads");
+		for (String size : sizes) {
+			int x = size.indexOf('x');
+			int rows, cols;
+			if (x < 0)
+				rows = cols = Integer.parseInt(size);
+			else {
+				rows = Integer.parseInt(size.substring(0,x));
+				cols = Integer.parseInt(size.substring(x+1));
+			}
+			runBatch(pool, count, algorithm, rows, cols);
+		}
+		pool.shutdown();
+	}
+
+
+	/**
+	 * Creates and solves count mazes of a given size in a fork-join pool,
+	 * and prints the results.
+	 */
+	public static void runBatch(ForkJoinPool pool, int count, String algorithm, int rows, int cols) {
+		if (rows % 2 == 0)
+			rows++;
+		if (cols % 2 == 0)
+			cols++;
+		Batch batch = new Batch(algorithm, rows, cols, count);
+		long start = System.nanoTime();
+		pool.invoke(new MazeTask(batch, 0, count));
+		long elapsed = System.nanoTime() - start;
+		long[] latency = batch.latency.clone();
+		Arrays.sort(latency);
+		long allocated = 0;
+		for (long bytes : batch.allocated)
+			allocated += bytes;
+		StringBuilder report = new StringBuilder();
+		report.append(rows).append('x').append(cols).append(": ");
+		report.append(String.format("%.1f mazes/sec", count / (elapsed / 1e9)));
+		report.append(String.format(", p50 %.3f ms", percentile(latency, 50) / 1e6));
+		report.append(String.format(", p99 %.3f ms", percentile(latency, 99) / 1e6));
+		if (allocated > 0) {
+			report.append(String.format(", %.1f KB/maze", allocated / 1024.0 / count));
+			report.append(String.format(", %.1f MB/sec allocated", allocated / 1048576.0 / (elapsed / 1e9)));
+		}
+		if (batch.failures.get() > 0)
+			report.append(", ").append(batch.failures.get()).append(" NOT SOLVED");
+		System.out.println(report);
+	}
+
+
+	private static long percentile(long[] sorted, int p) {
+		// Nearest-rank percentile of a sorted array.
+		if (sorted.length == 0)
+			return 0;
+		int rank = (int)Math.ceil(p / 100.0 * sorted.length);
+		return sorted[Math.max(rank, 1) - 1];
+	}
+
+
+	/**
+	 * The settings and results for one batch of mazes.  Each maze writes its
+	 * results into its own slot of the arrays, so no locking is needed.
+	 */
+	private static class Batch {
+		final String algorithm;
+		final int rows, cols;
+		final long[] latency;    // nanoseconds to create and solve each maze
+		final long[] allocated;  // bytes allocated by the thread for each maze, if known
+		final AtomicInteger failures = new AtomicInteger();
+		Batch(String algorithm, int rows, int cols, int count) {
+			this.algorithm = algorithm;
+			this.rows = rows;
+			this.cols = cols;
+			latency = new long[count];
+			allocated = new long[count];
+		}
+	}
+
+
+	/**
+	 * Creates and solves the mazes numbered from start to end-1, splitting the
+	 * range in half until it is small enough to do in one thread.
+	 */
+	private static class MazeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Batch batch;
+		private final int start, end;
+		MazeTask(Batch batch, int start, int end) {
+			this.batch = batch;
+			this.start = start;
+			this.end = end;
+		}
+		protected void compute() {
+			if (end - start > 8) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new MazeTask(batch, start, middle), new MazeTask(batch, middle, end));
+				return;
+			}
+			MazeSolverAlgorithm solver = MazeSolver.createAlgorithm(batch.algorithm);
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			for (int i = start; i < end; i++) {
+				long bytesBefore = allocatedBytes();
+				long time = System.nanoTime();
+				MazeGrid grid = new MazeGrid(batch.rows, batch.cols);
+				grid.create(MazeGrid.UNION_FIND, random);
+				boolean solved = solver.solve(grid, 1, 1, batch.rows-2, batch.cols-2);
+				batch.latency[i] = System.nanoTime() - time;
+				long bytesAfter = allocatedBytes();
+				if (bytesBefore >= 0 && bytesAfter >= 0)
+					batch.allocated[i] = bytesAfter - bytesBefore;
+				if ( ! solved )
+					batch.failures.incrementAndGet();
+			}
+		}
+	}
+
+
+	private static long allocatedBytes() {
+		// The number of bytes allocated so far by the current thread, or -1 if
+		// the JVM can't tell us.  This uses the HotSpot extension of ThreadMXBean.
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+}
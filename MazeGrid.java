@@ -0,0 +1,317 @@
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *  A MazeGrid holds the contents of a maze as one byte per square, stored
+ *  row by row in a single flat array.  Each square holds a small state code
+ *  instead of a Color:  WALL, OPEN, PATH or VISITED.  (Codes from 4 to 255
+ *  are not used by the grid itself, but are available to a MazePanel that
+ *  needs to store other colors in the grid.)  The grid knows nothing about
+ *  how the states are drawn; that is up to the panel that displays it, so
+ *  a MazeGrid can be created and solved without any GUI at all.
+ *  <p>A square can be identified by its row and column, or by its index
+ *  in the flat array, which is row*getColumns() + column.  Indexes are
+ *  convenient for solvers, since the four neighbors of the square at index
+ *  i are at i+1, i-1, i+getColumns() and i-getColumns().
+ */
+public class MazeGrid {
+
+	/** State of a square that is part of a corridor and has not been visited. */
+	public static final byte OPEN = 0;
+
+	/** State of a square that is part of a wall. */
+	public static final byte WALL = 1;
+
+	/** State of a square that is on the path that is being explored. */
+	public static final byte PATH = 2;
+
+	/** State of a square that has been explored and found to be a dead end. */
+	public static final byte VISITED = 3;
+
+	/**
+	 * Generator code for the original maze builder, which merges corridors by
+	 * flood-filling region codes every time a wall is torn down.
+	 */
+	public static final int FLOOD_FILL = 0;
+
+	/**
+	 * Generator code for the union-find maze builder, which tracks corridors in an
+	 * int[] disjoint-set forest.  It produces the same kind of random maze as
+	 * FLOOD_FILL, but it runs in close to linear time and does not use recursion,
+	 * so it can build very large mazes.
+	 */
+	public static final int UNION_FIND = 1;
+
+	private final int rows, cols;  // the number of rows and columns in the grid.
+	private final byte[] cells;    // the state of each square, stored row by row.
+
+
+	/**
+	 * Create a grid with a given number of rows and columns, in which every
+	 * square is OPEN.  Call create() to turn it into a maze.
+	 */
+	public MazeGrid(int rows, int cols) {
+		if (rows <= 0 || cols <= 0)
+			throw new IllegalArgumentException("The grid must have at least one row and one column.");
+		if ((long)rows * cols > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("The grid has too many squares: " + rows + "x" + cols);
+		this.rows = rows;
+		this.cols = cols;
+		cells = new byte[rows*cols];
+	}
+
+
+	/**
+	 * Returns the number of rows in the grid.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+
+	/**
+	 * Returns the number of columns in the grid.
+	 */
+	public int getColumns() {
+		return cols;
+	}
+
+
+	/**
+	 * Returns the index of a square in the flat array, row*getColumns() + column.
+	 */
+	public int index(int row, int column) {
+		return row*cols + column;
+	}
+
+
+	/**
+	 * Returns the state of a specified square.
+	 */
+	public byte get(int row, int column) {
+		return cells[row*cols + column];
+	}
+
+
+	/**
+	 * Returns the state of the square with a given index.
+	 */
+	public byte get(int index) {
+		return cells[index];
+	}
+
+
+	/**
+	 * Sets the state of a specified square.
+	 */
+	public void set(int row, int column, byte state) {
+		cells[row*cols + column] = state;
+	}
+
+
+	/**
+	 * Sets the state of the square with a given index.
+	 */
+	public void set(int index, byte state) {
+		cells[index] = state;
+	}
+
+
+	/**
+	 * Changes every square that has state from to have state to instead.
+	 * For example, replace(PATH,OPEN) followed by replace(VISITED,OPEN)
+	 * erases a solution so that the maze can be solved again.
+	 */
+	public void replace(byte from, byte to) {
+		for (int i = 0; i < cells.length; i++)
+			if (cells[i] == from)
+				cells[i] = to;
+	}
+
+
+	/**
+	 * Create a new random maze, setting every square to WALL or OPEN.  There
+	 * is a wall around the boundary of the grid, corridors run through the
+	 * squares with odd row and column numbers, and there are no loops.
+	 * The number of rows and columns should be odd.  The random choices are
+	 * made with the calling thread's ThreadLocalRandom, so several threads can
+	 * create mazes at the same time without competing for a shared generator.
+	 * @param generator which algorithm is used, FLOOD_FILL or UNION_FIND.
+	 */
+	public void create(int generator) {
+		create(generator, ThreadLocalRandom.current());
+	}
+
+
+	/**
+	 * Create a new random maze, as in create(generator), using a specified
+	 * source of random numbers.  Using a Random with a known seed will make
+	 * the same maze each time.
+	 * @param generator which algorithm is used, FLOOD_FILL or UNION_FIND.
+	 * @param random the source of random numbers; must not be shared with
+	 *    another thread while the maze is being created.
+	 */
+	public void create(int generator, Random random) {
+		if (generator == UNION_FIND)
+			createUnionFind(random);
+		else if (generator == FLOOD_FILL)
+			createFloodFill(random);
+		else
+			throw new IllegalArgumentException("Unknown maze generator: " + generator);
+	}
+
+
+	private void createFloodFill(Random random) {
+		// The original algorithm: every room starts with its own code number,
+		// and walls are removed in random order.  When a wall separates two
+		// different codes, it is torn down and convert() recodes one side.
+		int[][] maze = new int[rows][cols];
+		int wallCount = 0;
+		for (int i = 1; i<rows-1; i += 2)
+			for (int j = 1; j<cols-1; j += 2) {
+				if (i < rows-2)
+					wallCount++;
+				if (j < cols-2)
+					wallCount++;
+			}
+		int[] wallRows = new int[wallCount];
+		int[] wallCols = new int[wallCount];
+		int walls = 0;
+		for (int i = 1; i<rows-1; i += 2) { // make a grid of empty rooms
+			for (int j = 1; j<cols-1; j += 2) {
+				if (i < rows-2) {  // record info about wall below this room
+					wallRows[walls] = i+1;
+					wallCols[walls] = j;
+					walls++;
+				}
+				if (j < cols-2) {  // record info about wall to right of this room
+					wallRows[walls] = i;
+					wallCols[walls] = j+1;
+					walls++;
+				}
+				maze[i][j] = walls;  // each room is coded with a different number
+			}
+		}
+		while ( walls > 0 ) {
+			int w = random.nextInt(walls);
+			int row = wallRows[w];
+			int col = wallCols[w];
+			walls--;
+			wallRows[w] = wallRows[walls];
+			wallCols[w] = wallCols[walls];
+			if (row % 2 == 1 && maze[row][col-1] != maze[row][col+1]) {
+				// row is odd; wall separates rooms horizontally
+				convert(maze, row, col-1, maze[row][col-1], maze[row][col+1]);
+				maze[row][col] = maze[row][col+1];
+			}
+			else if (row % 2 == 0 && maze[row-1][col] != maze[row+1][col]) {
+				// row is even; wall separates rooms vertically
+				convert(maze, row-1, col, maze[row-1][col], maze[row+1][col]);
+				maze[row][col] = maze[row+1][col];
+			}
+		}
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < cols; col++)
+				if (maze[row][col] == 0)
+					cells[row*cols + col] = WALL;
+				else
+					cells[row*cols + col] = OPEN;
+		}
+	}
+
+
+	private void convert(int[][] maze, int row, int col, int replace, int replaceWith) {
+		// called by createFloodFill() when a wall is torn down,
+		// to change the code in the corridor on one side of the wall
+		// to match the code on the other side, so that the entire connected
+		// corridor contains the same code number.
+		if (maze[row][col] == replace) {
+			maze[row][col] = replaceWith;
+			convert(maze, row+1,col,replace,replaceWith);
+			convert(maze, row-1,col,replace,replaceWith);
+			convert(maze, row,col+1,replace,replaceWith);
+			convert(maze, row,col-1,replace,replaceWith);
+		}
+	}
+
+
+	private void createUnionFind(Random random) {
+		// Randomized Kruskal's algorithm.  Walls are visited in a uniformly random
+		// order, exactly as createFloodFill() does, but the corridors are kept in a
+		// disjoint-set forest over the rooms instead of being recoded cell by cell.
+		// Room (r,c) of the forest is grid square (2*r+1, 2*c+1).  A wall is coded
+		// as 2*room for the wall to the right of the room, or 2*room+1 for the wall
+		// below it.
+		int roomRows = rows / 2;
+		int roomCols = cols / 2;
+		int roomCount = roomRows * roomCols;
+		int[] parent = new int[roomCount];
+		byte[] rank = new byte[roomCount];
+		for (int room = 0; room < roomCount; room++)
+			parent[room] = room;
+		int wallCount = 0;
+		if (roomCount > 0)
+			wallCount = roomRows*(roomCols-1) + (roomRows-1)*roomCols;
+		int[] walls = new int[wallCount];
+		int n = 0;
+		for (int room = 0; room < roomCount; room++) {
+			if (room % roomCols < roomCols-1)
+				walls[n++] = 2*room;     // wall to the right of this room
+			if (room / roomCols < roomRows-1)
+				walls[n++] = 2*room + 1; // wall below this room
+		}
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < cols; col++) {
+				if (row % 2 == 1 && col % 2 == 1)
+					cells[row*cols + col] = OPEN;
+				else
+					cells[row*cols + col] = WALL;
+			}
+		}
+		for (int i = wallCount - 1; i >= 0; i--) {
+			// Fisher-Yates shuffle, done lazily:  pick a random wall from the ones
+			// that have not been looked at yet, and process it right away.
+			int j = random.nextInt(i+1);
+			int wall = walls[j];
+			walls[j] = walls[i];
+			int room = wall >> 1;
+			boolean right = (wall & 1) == 0;
+			int other = right ? room + 1 : room + roomCols;
+			int a = find(parent, room);
+			int b = find(parent, other);
+			if (a != b) {
+				if (rank[a] < rank[b])
+					parent[a] = b;
+				else if (rank[a] > rank[b])
+					parent[b] = a;
+				else {
+					parent[b] = a;
+					rank[a]++;
+				}
+				int row = 2*(room / roomCols) + 1;
+				int col = 2*(room % roomCols) + 1;
+				if (right)
+					cells[row*cols + col + 1] = OPEN;
+				else
+					cells[(row+1)*cols + col] = OPEN;
+			}
+		}
+	}
+
+
+	private static int find(int[] parent, int room) {
+		// Finds the root of the set that contains room, with full path compression.
+		// This is done with two loops instead of recursion so that long chains
+		// can't overflow the stack.
+		int root = room;
+		while (parent[root] != root)
+			root = parent[root];
+		while (parent[room] != root) {
+			int next = parent[room];
+			parent[room] = root;
+			room = next;
+		}
+		return root;
+	}
+
+}
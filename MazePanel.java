@@ -1,6 +1,7 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import javax.swing.*;
-import java.util.ArrayList;
 
 /**
  *  This class defines a panel that displays a maze.  More exactly,
@@ -9,12 +10,38 @@ import java.util.ArrayList;
  *  square and walls are black squares.  There is wall around the
  *  boundary of the maze.  There are no loops in the maze.  The
  *  class also includes a method for changing the color of any square.
+ *  The squares are kept in an off-screen image with one pixel per square,
+ *  which is scaled up to the size of the panel when it is drawn, so the
+ *  time it takes to paint the panel does not depend on the number of squares.
  */
 public class MazePanel extends JPanel {
 
+	/**
+	 * Generator code for the original maze builder, which merges corridors by
+	 * flood-filling region codes every time a wall is torn down.
+	 */
+	public static final int FLOOD_FILL = MazeGrid.FLOOD_FILL;
+
+	/**
+	 * Generator code for the union-find maze builder, which tracks corridors in an
+	 * int[] disjoint-set forest.  It produces the same kind of random maze as
+	 * FLOOD_FILL, but it runs in close to linear time and does not use recursion,
+	 * so it can build very large mazes.  This is the default.
+	 */
+	public static final int UNION_FIND = MazeGrid.UNION_FIND;
+
 	private int rows, cols;   // the number of rows and columns in the grid; these are odd integers.
-	private Color[][] color;  // holds the colors of all the squares, with null representing the background color (white).
+	private MazeGrid grid;    // holds the state of all the squares, one byte per square.
+	private Color[] palette;  // the color for each state code in the grid, with null representing the background color (white).
+	private int paletteSize;  // the number of state codes that have been given a color.
+	private BufferedImage image;  // the picture of the maze, with one pixel for each square.
+	private int[] pixels;         // the pixel data of image, row by row; changed directly by setColor().
 	private int autoDelay = 0;  // milliseconds of delay added after any move or heading change.
+	private int generator;    // which algorithm create() uses, FLOOD_FILL or UNION_FIND.
+
+	private int dirtyTop, dirtyLeft, dirtyBottom, dirtyRight;  // the rows and columns of squares that have
+	                                                           // changed since the last repaintChanged();
+	                                                           // empty when dirtyTop > dirtyBottom.
 
 	
 	/**
@@ -38,6 +65,23 @@ public class MazePanel extends JPanel {
 	 *   fit in the panel).
 	 */
 	public MazePanel(int rows, int cols, int preferredSquareSize) {
+		this(rows,cols,preferredSquareSize,UNION_FIND);
+	}
+
+
+	/**
+	 * Create a maze, using a specified algorithm to build it.
+	 * @param rows The number of rows in the maze.  If the parameter value is an even
+	 *   number, one is added to the value to make it odd.
+	 * @param cols The number of columns in the maze.  If the parameter value is an even
+	 *   number, one is added to the value to make it odd.
+	 * @param preferredSquareSize How big each square in the grid should be.
+	 * @param generator Which algorithm is used to build the maze, both now and in later
+	 *   calls to create().  Must be MazePanel.FLOOD_FILL or MazePanel.UNION_FIND.
+	 */
+	public MazePanel(int rows, int cols, int preferredSquareSize, int generator) {
+		if (generator != FLOOD_FILL && generator != UNION_FIND)
+			throw new IllegalArgumentException("Unknown maze generator: " + generator);
 		if (rows % 2 == 0)
 			rows++; // make it odd
 		if (cols % 2 == 0)
@@ -45,7 +89,17 @@ public class MazePanel extends JPanel {
 		setPreferredSize( new Dimension(preferredSquareSize*cols, preferredSquareSize*rows) );
 		this.rows = rows;
 		this.cols = cols;
-		color = new Color[rows][cols];
+		this.generator = generator;
+		grid = new MazeGrid(rows,cols);
+		palette = new Color[256];
+		palette[MazeGrid.OPEN] = Color.WHITE;
+		palette[MazeGrid.WALL] = Color.BLACK;
+		palette[MazeGrid.PATH] = Color.RED;
+		palette[MazeGrid.VISITED] = Color.YELLOW;
+		paletteSize = 4;
+		image = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		dirtyTop = rows;
 		create(); // create the maze
 	}
 
@@ -66,13 +120,24 @@ public class MazePanel extends JPanel {
 	}
 
 
+	/**
+	 * Returns the grid that holds the contents of the maze.  The states
+	 * MazeGrid.OPEN, WALL, PATH and VISITED are drawn as white, black, red
+	 * and yellow.  Changes made directly to the grid are not shown until
+	 * changed() is called for the squares that were changed.
+	 */
+	public MazeGrid getGrid() {
+		return grid;
+	}
+
+
 	/**
 	 * Returns the color for a specified square.  A return value of null
 	 * means that the square will be drawn in the background color of
 	 * the panel (white by default).
 	 */
 	public Color getColor( int row, int column ) {
-		return color[row][column];
+		return palette[grid.get(row,column) & 0xFF];
 	}
 
 	
@@ -80,94 +145,116 @@ public class MazePanel extends JPanel {
 	 * Sets the color of a specified square.  Setting the color to null
 	 * means that the square will be drawn in the background color of the
 	 * panel (white by default).  Note that this method does NOT call
-	 * repaint(); you have to repaint the panel to see the change.
+	 * repaint(); you have to repaint the panel to see the change.  Calling
+	 * repaintChanged() will repaint just the squares whose colors were set.
 	 */
 	public void setColor( int row, int column, Color color) {
-		this.color[row][column] = color;
+		byte state = stateFor(color);
+		grid.set(row, column, state);
+		pixels[row*cols + column] = rgb(state);
+		markDirty(row, column);
 	}
 
-	
+
 	/**
-	 * Create a new random maze, resetting the colors of all the squares
-	 * to be either Color.BLACK or null.  Note that this method does
-	 * not call repaint(); you have to repaint the panel to see the change.
+	 * Records that a square has changed, so that it will be included in the next
+	 * call to repaintChanged().  setColor() does this automatically, but code that
+	 * changes the grid directly (see getGrid()) must call this method itself.
 	 */
-	public void create() {
-		int[][] maze = new int[rows][cols];
-		ArrayList<Point> walls = new ArrayList<Point>();
-		for (int i = 1; i<rows-1; i += 2) { // make a grid of empty rooms
-			for (int j = 1; j<cols-1; j += 2) {
-				if (i < rows-2) {  // record info about wall below this room
-					walls.add( new Point(i+1,j) );
-				}
-				if (j < cols-2) {  // record info about wall to right of this room
-					walls.add( new Point(i,j+1) );
-				}
-				maze[i][j] = walls.size();  // each room is coded with a different negative number
-			}
-		}
-		while ( ! walls.isEmpty() ) {
-			Point wall = walls.remove( (int)(Math.random()*walls.size()) );
-			int row = wall.x;
-			int col = wall.y;
-			if (row % 2 == 1 && maze[row][col-1] != maze[row][col+1]) {
-				// row is odd; wall separates rooms horizontally
-				convert(maze, row, col-1, maze[row][col-1], maze[row][col+1]);
-				maze[row][col] = maze[row][col+1];
-			}
-			else if (row % 2 == 0 && maze[row-1][col] != maze[row+1][col]) {
-				// row is even; wall separates rooms vertically
-				convert(maze, row-1, col, maze[row-1][col], maze[row+1][col]);
-				maze[row][col] = maze[row+1][col];
-			}
-		}
-		for (int row = 0; row < rows; row++) {
-			for (int col = 0; col < cols; col++)
-				if (maze[row][col] == 0)
-					color[row][col] = Color.BLACK;
-				else
-					color[row][col] = Color.WHITE;
-		}
+	public void changed( int row, int column ) {
+		pixels[row*cols + column] = rgb(grid.get(row, column));
+		markDirty(row, column);
 	}
 
-	
-	private void convert(int[][] maze, int row, int col, int replace, int replaceWith) {
-		// called by create() when a wall is torn down, 
-		// to change the code in the corridor on one side of the wall
-		// to match the code on the other side, so that the entire connected
-		// corridor contains the same code number.
-		if (maze[row][col] == replace) {
-			maze[row][col] = replaceWith;
-			convert(maze, row+1,col,replace,replaceWith);
-			convert(maze, row-1,col,replace,replaceWith);
-			convert(maze, row,col+1,replace,replaceWith);
-			convert(maze, row,col-1,replace,replaceWith);
+
+	private synchronized void markDirty( int row, int column ) {
+		if (dirtyTop > dirtyBottom) {
+			dirtyTop = dirtyBottom = row;
+			dirtyLeft = dirtyRight = column;
+		}
+		else {
+			if (row < dirtyTop)
+				dirtyTop = row;
+			if (row > dirtyBottom)
+				dirtyBottom = row;
+			if (column < dirtyLeft)
+				dirtyLeft = column;
+			if (column > dirtyRight)
+				dirtyRight = column;
 		}
 	}
 
 
 	/**
-	 * Fills the panel with the grid of squares.
+	 * Repaints the part of the panel that holds the squares that have changed since
+	 * the last call to this method, instead of the whole panel.  When the squares
+	 * are changed one or a few at a time, as they are by a maze solver, this makes
+	 * the cost of each repaint depend on the number of changed squares instead of
+	 * the size of the maze.
 	 */
-	protected void paintComponent( Graphics g ) {
-		super.paintComponent(g);
+	public synchronized void repaintChanged() {
+		if (dirtyTop > dirtyBottom)
+			return;
 		double squareWidth = (double)getWidth() / cols;
 		double squareHeight = (double)getHeight() / rows;
-		for (int row = 0; row < rows; row++) {
-			int y = (int)(squareHeight * row);
-			int h = (int)(squareHeight * (row+1)) - y;
-			for (int col = 0; col < cols; col++) {
-				if ( color[row][col] != null) {
-					int x = (int)(squareWidth * col);
-					int w = (int)(squareWidth * (col+1)) - x;
-					g.setColor( color[row][col] );
-					g.fillRect(x, y, w, h);
-				}
-			}
-		}
+		int x = (int)(squareWidth * dirtyLeft);
+		int y = (int)(squareHeight * dirtyTop);
+		int w = (int)(squareWidth * (dirtyRight+1)) - x;
+		int h = (int)(squareHeight * (dirtyBottom+1)) - y;
+		repaint(x, y, w, h);
+		dirtyTop = rows;
+		dirtyBottom = -1;
 	}
 
-}
+	
+	/**
+	 * Create a new random maze, resetting the colors of all the squares
+	 * to be either Color.BLACK or Color.WHITE.  Note that this method does
+	 * not call repaint(); you have to repaint the panel to see the change.
+	 */
+	public void create() {
+		grid.create(generator);
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = rgb(grid.get(i));
+		markDirty(0, 0);
+		markDirty(rows-1, cols-1);
+	}
 
 
+	private int rgb(byte state) {
+		// The RGB value of the pixel that represents a state code in the grid.
+		Color c = palette[state & 0xFF];
+		if (c == null)
+			c = getBackground();
+		return c.getRGB();
+	}
 
+
+	/**
+	 * Returns the palette code that represents a given color in the grid,
+	 * adding the color to the palette if it is not already there.
+	 */
+	private byte stateFor(Color c) {
+		for (int i = 0; i < paletteSize; i++)  // the usual case: one of the standard Color constants
+			if (palette[i] == c)
+				return (byte)i;
+		for (int i = 0; i < paletteSize; i++)
+			if (c != null && c.equals(palette[i]))
+				return (byte)i;
+		if (paletteSize == palette.length)
+			throw new IllegalStateException("A maze can't use more than " + palette.length + " different colors.");
+		palette[paletteSize] = c;
+		return (byte)(paletteSize++);
+	}
+
+
+	/**
+	 * Fills the panel with the grid of squares, by drawing the off-screen image
+	 * scaled up to the size of the panel.  (Only the part of the image that is in
+	 * the clip rectangle of g is actually drawn.)
+	 */
+	protected void paintComponent( Graphics g ) {
+		g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+	}
+
+}
@@ -11,7 +11,41 @@ public class MazeSolver {
 	private static MazePanel maze;  // The panel that holds the maze.
 	private int autoDelay = 0;  // milliseconds of delay added after any move or heading change.
 
+	/**
+	 * Runs the demo.  The name of the solving algorithm can be given as a command
+	 * line argument (see createAlgorithm()); the default is "dfs", which does the
+	 * same search as recurse().  If the first argument is -headless, or if Java is
+	 * running with -Djava.awt.headless=true, no window is shown; see runHeadless().
+	 * In that case, the algorithm name can be followed by the number of rows and
+	 * columns in the maze.
+	 */
 	public static void main(String[] args) throws InterruptedException {
+		boolean headless = Boolean.getBoolean("java.awt.headless");
+		int arg = 0;
+		if (args.length > 0 && args[0].equals("-headless")) {
+			headless = true;
+			arg++;
+		}
+		String algorithm = "dfs";
+		if (args.length > arg)
+			algorithm = args[arg];
+		if (headless) {
+			MazeSolverAlgorithm solver = createAlgorithm(algorithm);
+			int rows = 100, cols = 110;
+			try {
+				if (args.length > arg+1)
+					rows = Integer.parseInt(args[arg+1]);
+				if (args.length > arg+2)
+					cols = Integer.parseInt(args[arg+2]);
+				runHeadless(solver, rows, cols);
+			}
+			catch (IllegalArgumentException e) {  // a size that is not a number, or is too small
+				System.err.println("Usage:  java MazeSolver -headless [algorithm] [rows] [cols]");
+				System.err.println("where rows and cols are whole numbers, at least 2.");
+				System.exit(1);
+			}
+			return;
+		}
 		JFrame window = new JFrame("Recursive Maze Solver Demo");
 		maze = new MazePanel(100,110,5);
 		window.setContentPane(maze);
@@ -20,14 +54,109 @@ public class MazeSolver {
 		window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		window.setLocation(100, 50);
 		window.setVisible(true);
-		// TODO: call the maze solver method
 		
+		solve(createAlgorithm(algorithm), 1, 1); // the maze is solved with the selected algorithm
+	
 		
-		recurse(1,1); // the maze is solve with the recursive method 
+	}
 	
+	/**
+	 *Creates a maze solving algorithm, given its name.
+	 *@param name one of "dfs" (depth-first, like recurse()), "bfs" (breadth-first), "astar" (A* search),
+	 *   "bidirectional" (breadth-first from both ends) or "deadend" (dead-end filling)
+	 *@throws IllegalArgumentException if the name is not one of these
+	 */
+	public static MazeSolverAlgorithm createAlgorithm(String name) {
+		if (name.equals("dfs"))
+			return new DepthFirstSolver();
+		else if (name.equals("bfs"))
+			return new BreadthFirstSolver();
+		else if (name.equals("astar"))
+			return new AStarSolver();
+		else if (name.equals("bidirectional"))
+			return new BidirectionalSolver();
+		else if (name.equals("deadend"))
+			return new DeadEndFillingSolver();
+		else
+			throw new IllegalArgumentException("Unknown maze solving algorithm: " + name);
+	}
+	
+	/**
+	 *A subroutine that solves the maze, in the same way as recurse(), but without using recursion,
+	 *so that it works for mazes of any size.  The maze uses a red line to highlight the path that solves the maze.
+	 *@param row takes an int, the start of the maze
+	 *@param col takes an int, the start of the maze
+	 */
+	public static void solve(int row, int col) {
+		solve(new DepthFirstSolver(), row, col);
+	}
+	
+	/**
+	 *A subroutine that solves the maze with a given algorithm, showing each step, and then reports
+	 *how much work the algorithm did.
+	 *@param solver the algorithm that is used to solve the maze
+	 *@param row takes an int, the start of the maze
+	 *@param col takes an int, the start of the maze
+	 */
+	public static void solve(MazeSolverAlgorithm solver, int row, int col) {
+		
+		solver.setListener(new MazeSolverListener() {
+			public void squareEntered(int row, int col) {
+				delay(100);
+			}
+			public void squareChanged(int row, int col) {
+				maze.changed(row, col);
+				maze.repaintChanged();
+			}
+		});
+		boolean solved = solver.solve(maze.getGrid(), row, col, maze.getRows()-2, maze.getColumns()-2);
+		maze.repaint();
+		report(solver);
+		if (solved) {
+			
+			int s = TextIO.getlnInt();
+			System.exit(0);
+			
+		}
 		
 	}
 	
+	/**
+	 *A subroutine that creates and solves a maze without any window, delays or repainting, which
+	 *makes it possible to solve mazes on a computer that has no display.  The time taken to create the maze
+	 *and the results of the solver are printed to standard output.  Unlike the other solving methods, this
+	 *one returns normally when it is done.
+	 *@param solver the algorithm that is used to solve the maze
+	 *@param rows the number of rows in the maze; one is added if it is even
+	 *@param cols the number of columns in the maze; one is added if it is even
+	 *@return true if the maze was solved
+	 *@throws IllegalArgumentException if rows or cols is less than 2
+	 */
+	public static boolean runHeadless(MazeSolverAlgorithm solver, int rows, int cols) {
+		if (rows < 2 || cols < 2)
+			throw new IllegalArgumentException("A maze needs at least 2 rows and 2 columns: " + rows + "x" + cols);
+		if (rows % 2 == 0)
+			rows++;
+		if (cols % 2 == 0)
+			cols++;
+		long start = System.nanoTime();
+		MazeGrid grid = new MazeGrid(rows, cols);
+		grid.create(MazeGrid.UNION_FIND);
+		long created = System.nanoTime();
+		System.out.println("created " + rows + "x" + cols + " maze in " + (created - start) / 1000000 + " ms");
+		solver.setListener(null);
+		boolean solved = solver.solve(grid, 1, 1, rows-2, cols-2);
+		report(solver);
+		return solved;
+	}
+	
+	private static void report(MazeSolverAlgorithm solver) {
+		// Prints the statistics for the most recent solve.
+		System.out.println(solver.getName() + ": path length " + solver.getPathLength()
+				+ ", " + solver.getSquaresExpanded() + " squares expanded, "
+				+ solver.getElapsedNanos() / 1000000 + " ms");
+	}
+	
 	/**
 	 *A subroutine that solves the maze. The maze uses a red line to highlight the path that solves the maze.
 	 *@param row takes an int, the start of the maze
@@ -56,40 +185,40 @@ public class MazeSolver {
 			if (maze.getColor(row,col+1) == Color.WHITE) {
 				
 				maze.setColor(row,col,Color.RED);
-				maze.repaint();
+				maze.repaintChanged();
 				recurse(row,col+1);
 				maze.setColor(row,col+1,Color.YELLOW);
-				maze.repaint();
+				maze.repaintChanged();
 			//	delay(100);
 				
 			}
 			if(maze.getColor(row-1,col) == Color.WHITE){
 				
 				maze.setColor(row,col,Color.RED);
-				maze.repaint();
+				maze.repaintChanged();
 				recurse(row-1,col);
 				maze.setColor(row-1,col,Color.YELLOW);
-				maze.repaint();
+				maze.repaintChanged();
 			//	delay(100);
 				
 			}
 			if(maze.getColor(row+1,col) == Color.WHITE){
 				
 				maze.setColor(row,col,Color.RED);
-				maze.repaint();
+				maze.repaintChanged();
 				recurse(row+1,col);
 				maze.setColor(row+1,col,Color.YELLOW);
-				maze.repaint();
+				maze.repaintChanged();
 			//	delay(100);
 				
 			}
 			if (maze.getColor(row,col-1) == Color.WHITE) {
 				
 				maze.setColor(row,col,Color.RED);
-				maze.repaint();
+				maze.repaintChanged();
 				recurse(row,col-1);
 				maze.setColor(row,col-1,Color.YELLOW);
-				maze.repaint();
+				maze.repaintChanged();
 				//delay(100);
 				
 			}
@@ -0,0 +1,50 @@
+
+/**
+ * A strategy for finding a path through a maze that is stored in a MazeGrid.
+ * A solver moves only through squares that are MazeGrid.OPEN, and it records
+ * its work in the grid:  squares on the path that it finds are set to
+ * MazeGrid.PATH, and other squares that it explores are usually set to
+ * MazeGrid.VISITED.  After each call to solve(), the solver can report how
+ * much work it did, so that different algorithms can be compared on the
+ * same mazes.  See MazeSolver.createAlgorithm() for the available solvers.
+ */
+public interface MazeSolverAlgorithm {
+
+	/**
+	 * Returns a short name for the algorithm, such as "bfs", that can be
+	 * passed to MazeSolver.createAlgorithm().
+	 */
+	String getName();
+
+	/**
+	 * Sets the listener that is told about each step of the search.  The
+	 * value can be null, which means that the search runs without pauses.
+	 */
+	void setListener(MazeSolverListener listener);
+
+	/**
+	 * Searches for a path from a starting square to a goal square.  The squares
+	 * around the edge of the grid must not be OPEN.
+	 * @return true if a path was found, false if the goal can't be reached.
+	 */
+	boolean solve(MazeGrid grid, int startRow, int startCol, int goalRow, int goalCol);
+
+	/**
+	 * Returns the number of squares, including the start and the goal, on the
+	 * path found by the most recent call to solve(), or zero if none was found.
+	 */
+	int getPathLength();
+
+	/**
+	 * Returns the number of squares that were expanded (that is, whose neighbors
+	 * were examined) during the most recent call to solve().
+	 */
+	long getSquaresExpanded();
+
+	/**
+	 * Returns the wall-clock time taken by the most recent call to solve(),
+	 * in nanoseconds.  This includes any time spent in the listener.
+	 */
+	long getElapsedNanos();
+
+}
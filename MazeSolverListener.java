@@ -0,0 +1,20 @@
+
+/**
+ * An object that is told about the progress of a maze solver, for example
+ * so that it can repaint the maze and slow the solver down enough to make
+ * the search visible.  A solver that has no listener runs at full speed.
+ */
+public interface MazeSolverListener {
+
+	/**
+	 * Called each time the solver arrives at a square, before it looks at
+	 * the square's neighbors.
+	 */
+	void squareEntered(int row, int col);
+
+	/**
+	 * Called each time the solver changes the state of a square in the grid.
+	 */
+	void squareChanged(int row, int col);
+
+}
@@ -0,0 +1,278 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws the fractals from TurtleGraphics and SierpinskiTurtle using all of the
+ * available processors.  The recursive methods that make those pictures call
+ * themselves several times, and each call draws its own part of the picture,
+ * starting from a position and heading that can be computed in advance.  So
+ * instead of running the recursion on one turtle, ParallelFractals splits the
+ * top levels of the recursion into fork-join tasks.  Each task knows where its
+ * part of the picture starts, and draws it with its own SegmentTurtle into its
+ * own SegmentBuffer, using the same recursive method as the sequential version
+ * once the level is low enough.  The buffers are then put together in the order
+ * in which the sequential version would have drawn them and drawn onto the panel
+ * all at once.  Colors and line widths that one part leaves for the next are
+ * handled by SegmentBuffer.append().
+ * <p>The result looks the same as the sequential version, except that
+ * randomTree() makes different random choices.  (The starting points of the
+ * parts are computed in a different order than the sequential turtle would
+ * compute them, and the buffers store coordinates as floats, so a few lines
+ * that fall exactly on a pixel boundary can move over by one pixel.)  The
+ * turtle's pen should be down.  Afterwards, the turtle is where the sequential
+ * version would have left it.
+ */
+public class ParallelFractals {
+
+	/** Shape code for TurtleGraphics.koch(). */
+	public static final int KOCH = 0;
+
+	/** Shape code for TurtleGraphics.square(). */
+	public static final int SQUARE = 1;
+
+	/** Shape code for TurtleGraphics.Tree(). */
+	public static final int TREE = 2;
+
+	/** Shape code for TurtleGraphics.randomTree(). */
+	public static final int RANDOM_TREE = 3;
+
+	/** Shape code for SierpinskiTurtle.sierpinskiTriangle(). */
+	public static final int SIERPINSKI = 4;
+
+	/**
+	 * For each shape, the highest level that is drawn by a single task.  These
+	 * give tasks of roughly a thousand segments, which is enough work to make
+	 * a task worth forking.
+	 */
+	private static final int[] SEQUENTIAL_LEVEL = { 5, 4, 10, 6, 6 };
+
+
+	public static void koch(TurtlePanel turtle, double size, int level) {
+		draw(turtle, KOCH, size, level);
+	}
+
+	public static void square(TurtlePanel turtle, double size, int level) {
+		draw(turtle, SQUARE, size, level);
+	}
+
+	public static void tree(TurtlePanel turtle, double size, int level) {
+		draw(turtle, TREE, size, level);
+	}
+
+	public static void randomTree(TurtlePanel turtle, double size, int level) {
+		draw(turtle, RANDOM_TREE, size, level);
+	}
+
+	public static void sierpinskiTriangle(TurtlePanel turtle, double size, int level) {
+		draw(turtle, SIERPINSKI, size, level);
+	}
+
+
+	/**
+	 * Draws one of the shapes on a TurtlePanel, starting at the turtle's position
+	 * and heading, and then moves the turtle to the end of the shape.
+	 * @param shape one of the shape codes, such as KOCH.
+	 */
+	public static void draw(TurtlePanel turtle, int shape, double size, int level) {
+		SegmentBuffer segments = generate(shape, turtle.getTurtleX(), turtle.getTurtleY(),
+				turtle.getHeading(), size, level, turtle.getDetailSize());
+		turtle.drawSegments(segments);
+		if (shape == KOCH || shape == SQUARE) {
+			turtle.penUp();
+			turtle.forward(size);
+			turtle.penDown();
+		}
+	}
+
+
+	/**
+	 * Makes the segments of one of the shapes in the common fork-join pool.
+	 * The segments at the start of the picture, before the shape sets a color or
+	 * line width of its own, have an inherited color and width.
+	 * @param shape one of the shape codes, such as KOCH.
+	 * @param x the x-coordinate of the starting point of the shape.
+	 * @param y the y-coordinate of the starting point of the shape.
+	 * @param heading the starting direction of the shape, in degrees.
+	 */
+	public static SegmentBuffer generate(int shape, double x, double y, double heading, double size, int level) {
+		return generate(shape, x, y, heading, size, level, 0);
+	}
+
+	/**
+	 * Same as generate(shape,x,y,heading,size,level), but parts of the shape that
+	 * are smaller than detailSize are drawn as if they were at level zero, as with
+	 * a Turtle whose getDetailSize() returns detailSize.  This is what lets a
+	 * TurtlePanel with a detail threshold draw any level in bounded time.
+	 */
+	public static SegmentBuffer generate(int shape, double x, double y, double heading, double size, int level,
+			double detailSize) {
+		if (shape < KOCH || shape > SIERPINSKI)
+			throw new IllegalArgumentException("Unknown shape: " + shape);
+		if (level < 0)
+			throw new IllegalArgumentException("The level can't be negative.");
+		if (detailSize < 0)
+			throw new IllegalArgumentException("The detail size can't be negative.");
+		return ForkJoinPool.commonPool().invoke(new FractalTask(shape, size, level, x, y, heading, detailSize));
+	}
+
+
+	/**
+	 * Draws one part of a picture.  A task with a low level runs the sequential
+	 * recursive method.  Otherwise, it does the same things that the recursive
+	 * method does at the top level, using a SegmentTurtle for the lines that it
+	 * draws itself, but forks a new task instead of each recursive call.
+	 */
+	private static class FractalTask extends RecursiveTask<SegmentBuffer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int shape;
+		private final double size;
+		private final int level;
+		private final double x, y, heading;  // where this part of the picture starts.
+		private final double detailSize;     // parts smaller than this are drawn as level zero.
+
+		private SegmentTurtle turtle;     // draws the lines between the subtasks.
+		private ArrayList<Object> parts;  // the SegmentBuffers and forked tasks, in order.
+
+		FractalTask(int shape, double size, int level, double x, double y, double heading, double detailSize) {
+			this.shape = shape;
+			this.size = size;
+			this.level = level;
+			this.x = x;
+			this.y = y;
+			this.heading = heading;
+			this.detailSize = detailSize;
+		}
+
+		protected SegmentBuffer compute() {
+			if (level <= SEQUENTIAL_LEVEL[shape] || size < detailSize) {
+				SegmentTurtle t = new SegmentTurtle(x, y, heading);
+				t.setDetailSize(detailSize);
+				switch (shape) {
+				case KOCH:
+					TurtleGraphics.koch(t, size, level);
+					break;
+				case SQUARE:
+					TurtleGraphics.square(t, size, level);
+					break;
+				case TREE:
+					TurtleGraphics.Tree(t, size, level);
+					break;
+				case RANDOM_TREE:
+					TurtleGraphics.randomTree(t, size, level);
+					break;
+				case SIERPINSKI:
+					SierpinskiTurtle.sierpinskiTriangle(t, size, level);
+					break;
+				}
+				return t.getSegments();
+			}
+			turtle = new SegmentTurtle(x, y, heading);
+			parts = new ArrayList<Object>();
+			switch (shape) {
+			case KOCH:
+				child(size/3, true);
+				turtle.turn(60);
+				child(size/3, true);
+				turtle.turn(-120);
+				child(size/3, true);
+				turtle.turn(60);
+				child(size/3, true);
+				break;
+			case SQUARE:
+				child(size/3, true);
+				turtle.turn(90);
+				child(size/3, true);
+				turtle.turn(-90);
+				child(size/3, true);
+				turtle.turn(-90);
+				child(size/3, true);
+				turtle.turn(90);
+				child(size/3, true);
+				break;
+			case TREE:
+				turtle.color(Color.RED);
+				turtle.lineWidth(size/2);
+				turtle.forward(size/2);
+				turtle.turn(45);
+				turtle.color(Color.RED);
+				child(size/2, false);
+				turtle.turn(-90);
+				turtle.color(Color.RED);
+				child(size/2, false);
+				turtle.turn(45);
+				turtle.color(Color.RED);
+				turtle.back(size/2);
+				break;
+			case RANDOM_TREE:
+				double s = ThreadLocalRandom.current().nextDouble()*size/2 + size/2+0.1;
+				turtle.randomColor();
+				turtle.forward(s/2);
+				turtle.turn(45);
+				child(s/3, false);
+				turtle.turn(-90);
+				child(s/3, false);
+				turtle.turn(45);
+				child(s/2, false);
+				turtle.back(s/2);
+				break;
+			case SIERPINSKI:
+				child(size/2, false);
+				turtle.forward(size/2);
+				child(size/2, false);
+				turtle.back(size/2);
+				turtle.turn(60);
+				turtle.forward(size/2);
+				turtle.turn(-60);
+				child(size/2, false);
+				turtle.turn(60);
+				turtle.back(size/2);
+				turtle.turn(-60);
+				break;
+			}
+			parts.add(turtle.getSegments());
+			SegmentBuffer[] buffers = new SegmentBuffer[parts.size()];
+			int total = 0;
+			for (int i = 0; i < buffers.length; i++) {
+				Object part = parts.get(i);
+				if (part instanceof FractalTask)
+					buffers[i] = ((FractalTask)part).join();
+				else
+					buffers[i] = (SegmentBuffer)part;
+				total += buffers[i].size();
+			}
+			SegmentBuffer result = new SegmentBuffer(total);
+			for (SegmentBuffer b : buffers)
+				result.append(b);
+			return result;
+		}
+
+		/**
+		 * Forks a task for a recursive call at the turtle's current position and
+		 * heading.  The lines drawn so far are kept, and a new SegmentTurtle takes
+		 * over; its color and width are inherited, since the subtask can change them.
+		 * @param advance true if the recursive call leaves the turtle at a distance
+		 *    of size in front of where it started, false if it leaves the turtle
+		 *    where it started.
+		 */
+		private void child(double size, boolean advance) {
+			FractalTask task = new FractalTask(shape, size, level-1,
+					turtle.getTurtleX(), turtle.getTurtleY(), turtle.getHeading(), detailSize);
+			task.fork();
+			parts.add(turtle.getSegments());
+			parts.add(task);
+			turtle = new SegmentTurtle(turtle.getTurtleX(), turtle.getTurtleY(), turtle.getHeading());
+			if (advance) {
+				turtle.penUp();
+				turtle.forward(size);
+				turtle.penDown();
+			}
+		}
+
+	}
+
+}
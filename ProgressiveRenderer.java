@@ -0,0 +1,221 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JFrame;
+
+/**
+ * A ProgressiveRenderer draws one of the fractals from TurtleGraphics or
+ * SierpinskiTurtle on a TurtlePanel a level at a time:  first level 0, then
+ * level 1, and so on up to the level that was asked for.  Each level is drawn
+ * by a background thread into an image that the user doesn't see, on top of a
+ * copy of the picture as it was when the rendering started.  When a level is
+ * complete, the image replaces the whole picture on the panel in one step.  So
+ * the panel always shows a complete picture at the best level so far, instead
+ * of a half-drawn one, and the event thread only ever copies the picture to
+ * the screen, so the window stays responsive no matter how deep the level is.
+ * <p>Parts of the fractal that are smaller than the panel's detail threshold
+ * (see TurtlePanel.setDetailThreshold()), or than one pixel if no threshold is
+ * set, are not drawn in detail, so every level takes a bounded amount of time,
+ * and levels past the point where no more detail shows up are quick.
+ * <p>The panel's turtle does not move.  While a rendering is going on, nothing
+ * else should be drawn on the panel, since each level replaces the picture.
+ * Starting a new rendering, or calling cancel(), stops the one that is going
+ * on, leaving the picture at the last level that was finished.
+ */
+public class ProgressiveRenderer {
+
+	private final TurtlePanel panel;
+	private volatile Thread thread;          // The thread doing the current rendering, or null.
+	private volatile boolean cancelled;      // Tells the current thread to stop.
+	private volatile int completedLevel = -1;  // The last level that was shown, or -1.
+
+
+	/**
+	 * Create a renderer that draws on a given panel.
+	 */
+	public ProgressiveRenderer(TurtlePanel panel) {
+		if (panel == null)
+			throw new IllegalArgumentException("The panel can't be null.");
+		this.panel = panel;
+	}
+
+
+	/**
+	 * Starts drawing one of the shapes, from level 0 up to a given level, in the
+	 * color and line width of the panel's turtle, starting at its position and
+	 * heading, as ParallelFractals.draw() would.  This returns right away; the
+	 * drawing is done by a background thread.  Any rendering that is already going
+	 * on is cancelled first.  This should be called by the thread that draws on the
+	 * panel, and the turtle's pen should be down.
+	 * @param shape one of the shape codes from ParallelFractals, such as ParallelFractals.KOCH.
+	 */
+	public void render(final int shape, final double size, final int level) {
+		if (shape < ParallelFractals.KOCH || shape > ParallelFractals.SIERPINSKI)
+			throw new IllegalArgumentException("Unknown shape: " + shape);
+		if (level < 0)
+			throw new IllegalArgumentException("The level can't be negative.");
+		cancel();
+		final BufferedImage background = panel.copyPicture();
+		final double x = panel.getTurtleX();
+		final double y = panel.getTurtleY();
+		final double heading = panel.getHeading();
+		final Color color = panel.getColor();
+		final double lineWidth = panel.getLineWidth();
+		final double detailPixels = Math.max(1, panel.getDetailSize() / panel.getUnitsPerPixel());
+		cancelled = false;
+		completedLevel = -1;
+		thread = new Thread("ProgressiveRenderer") {
+			public void run() {
+				BufferedImage back = new BufferedImage(background.getWidth(), background.getHeight(),
+						BufferedImage.TYPE_INT_RGB);
+				PassTurtle turtle = new PassTurtle(back);  // Reused for every level, so it has one graphics context.
+				turtle.setDetailThreshold(detailPixels);
+				try {
+					for (int i = 0; i <= level; i++) {
+						Graphics g = back.createGraphics();
+						g.drawImage(background, 0, 0, null);
+						g.dispose();
+						turtle.penUp();
+						turtle.moveTo(x, y);
+						turtle.face(heading);
+						turtle.penDown();
+						turtle.color(color);
+						turtle.lineWidth(lineWidth);
+						drawShape(turtle, shape, size, i);
+						if (cancelled)
+							return;
+						panel.setPicture(back);
+						completedLevel = i;
+					}
+				}
+				catch (Cancelled e) {
+				}
+				finally {
+					turtle.dispose();
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the rendering that is going on, if any, and waits for its thread to
+	 * end.  The picture stays at the last level that was finished.
+	 */
+	public void cancel() {
+		if (thread == null)
+			return;
+		cancelled = true;
+		waitUntilDone();
+		thread = null;
+	}
+
+	/**
+	 * Waits until the current rendering is finished or cancelled.
+	 */
+	public void waitUntilDone() {
+		Thread t = thread;
+		if (t == null)
+			return;
+		while (t.isAlive()) {
+			try {
+				t.join();
+			}
+			catch (InterruptedException e) {
+			}
+		}
+	}
+
+	/**
+	 * Returns true if no rendering is going on.
+	 */
+	public boolean isDone() {
+		Thread t = thread;
+		return t == null || !t.isAlive();
+	}
+
+	/**
+	 * Returns the highest level that has been shown on the panel by the current
+	 * rendering, or -1 if it hasn't finished level 0 yet.
+	 */
+	public int getCompletedLevel() {
+		return completedLevel;
+	}
+
+
+	private static void drawShape(Turtle turtle, int shape, double size, int level) {
+		switch (shape) {
+		case ParallelFractals.KOCH:
+			TurtleGraphics.koch(turtle, size, level);
+			break;
+		case ParallelFractals.SQUARE:
+			TurtleGraphics.square(turtle, size, level);
+			break;
+		case ParallelFractals.TREE:
+			TurtleGraphics.Tree(turtle, size, level);
+			break;
+		case ParallelFractals.RANDOM_TREE:
+			TurtleGraphics.randomTree(turtle, size, level);
+			break;
+		case ParallelFractals.SIERPINSKI:
+			SierpinskiTurtle.sierpinskiTriangle(turtle, size, level);
+			break;
+		}
+	}
+
+	/**
+	 * Thrown by a PassTurtle to get out of the recursion when the rendering is cancelled.
+	 */
+	private static class Cancelled extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * The turtle that draws each level into the back image.  Every move checks
+	 * whether the rendering has been cancelled, so a deep level can be stopped
+	 * in the middle.
+	 */
+	private class PassTurtle extends HeadlessTurtle {
+		PassTurtle(BufferedImage image) {
+			super(image);
+		}
+		public void forward(double distance) {
+			if (cancelled)
+				throw new Cancelled();
+			super.forward(distance);
+		}
+		public void move(double dx, double dy) {
+			if (cancelled)
+				throw new Cancelled();
+			super.move(dx, dy);
+		}
+		public void moveTo(double x, double y) {
+			if (cancelled)
+				throw new Cancelled();
+			super.moveTo(x, y);
+		}
+	}
+
+
+	/**
+	 * Opens a window and draws a Koch curve up to level 12, a level at a time.
+	 */
+	public static void main(String[] args) {
+		TurtlePanel turtle = new TurtlePanel();
+		JFrame window = new JFrame("Progressive Koch Curve");
+		window.setContentPane(turtle);
+		window.pack();
+		window.setResizable(false);
+		window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		window.setVisible(true);
+		turtle.setTurtleIsVisible(false);
+		turtle.penUp();
+		turtle.moveTo(-10, -3);
+		turtle.penDown();
+		ProgressiveRenderer renderer = new ProgressiveRenderer(turtle);
+		renderer.render(ParallelFractals.KOCH, 20, 12);
+		renderer.waitUntilDone();
+	}
+
+}
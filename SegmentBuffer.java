@@ -0,0 +1,194 @@
+import java.util.Arrays;
+
+/**
+ * A SegmentBuffer is a growable list of line segments, in turtle coordinates,
+ * each with its own color and line width.  It is filled by a SegmentTurtle and
+ * drawn by TurtlePanel.drawSegments().  The segments are kept in arrays of
+ * primitive values, four floats for the end points of each segment plus an
+ * int for its ARGB color and a float for its width, so a buffer with millions
+ * of segments does not need millions of objects.
+ * <p>A segment can be drawn with a color or width that is not known yet, because
+ * it depends on what was drawn before it; that happens when a picture is made by
+ * several SegmentTurtles that each draw one part.  Those segments are marked with
+ * INHERITED_COLOR or INHERITED_WIDTH.  When one buffer is appended to another,
+ * its inherited values are replaced by the color and width that the other buffer
+ * ends with, and when a buffer is drawn, any values that are still inherited
+ * are taken from the panel.
+ */
+public class SegmentBuffer {
+
+	/**
+	 * The color of a segment that is drawn in whatever color was in use before
+	 * the buffer started.  This is a fully transparent color, so it could not
+	 * have been seen anyway.
+	 */
+	public static final int INHERITED_COLOR = 0x00000001;
+
+	/**
+	 * The width of a segment that is drawn with whatever line width was in use
+	 * before the buffer started.
+	 */
+	public static final float INHERITED_WIDTH = Float.NaN;
+
+	private float[] coords;  // x1,y1,x2,y2 for each segment.
+	private int[] colors;    // ARGB color of each segment.
+	private float[] widths;  // line width of each segment.
+	private int count;       // number of segments.
+
+	private int finalColor = INHERITED_COLOR;      // color in use at the end of the buffer.
+	private float finalWidth = INHERITED_WIDTH;    // line width in use at the end of the buffer.
+
+
+	/**
+	 * Create an empty buffer.
+	 */
+	public SegmentBuffer() {
+		this(64);
+	}
+
+	/**
+	 * Create an empty buffer with room for a given number of segments.  The
+	 * buffer grows as needed, so this is only a hint.
+	 */
+	public SegmentBuffer(int capacity) {
+		if (capacity < 1)
+			capacity = 1;
+		coords = new float[4*capacity];
+		colors = new int[capacity];
+		widths = new float[capacity];
+	}
+
+
+	/**
+	 * Returns the number of segments in the buffer.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Removes all segments from the buffer, and makes its final color and width inherited.
+	 */
+	public void reset() {
+		count = 0;
+		finalColor = INHERITED_COLOR;
+		finalWidth = INHERITED_WIDTH;
+	}
+
+
+	/**
+	 * Adds a segment to the end of the buffer.  The color and width also become
+	 * the final color and width of the buffer.
+	 */
+	public void add(double x1, double y1, double x2, double y2, int argb, float width) {
+		if (count == colors.length)
+			grow(count + 1);
+		int i = 4*count;
+		coords[i] = (float)x1;
+		coords[i+1] = (float)y1;
+		coords[i+2] = (float)x2;
+		coords[i+3] = (float)y2;
+		colors[count] = argb;
+		widths[count] = width;
+		count++;
+		finalColor = argb;
+		finalWidth = width;
+	}
+
+	/**
+	 * Sets the color and width that are in use at the end of the buffer, for a turtle
+	 * that changes its color or width without drawing anything afterwards.
+	 */
+	void setFinalState(int argb, float width) {
+		finalColor = argb;
+		finalWidth = width;
+	}
+
+	/**
+	 * Adds all the segments of another buffer to the end of this one.  Segments
+	 * of the other buffer that have an inherited color or width get the final
+	 * color or width of this buffer, unless that is also inherited.
+	 */
+	public void append(SegmentBuffer other) {
+		int n = other.count;
+		if (count + n > colors.length)
+			grow(count + n);
+		System.arraycopy(other.coords, 0, coords, 4*count, 4*n);
+		for (int i = 0; i < n; i++) {
+			int c = other.colors[i];
+			float w = other.widths[i];
+			colors[count+i] = (c == INHERITED_COLOR) ? finalColor : c;
+			widths[count+i] = (w != w) ? finalWidth : w;  // (w != w) is true only for NaN
+		}
+		count += n;
+		if (other.finalColor != INHERITED_COLOR)
+			finalColor = other.finalColor;
+		if (other.finalWidth == other.finalWidth)
+			finalWidth = other.finalWidth;
+	}
+
+	private void grow(int minimum) {
+		int capacity = Math.max(minimum, 2*colors.length);
+		coords = Arrays.copyOf(coords, 4*capacity);
+		colors = Arrays.copyOf(colors, capacity);
+		widths = Arrays.copyOf(widths, capacity);
+	}
+
+
+	/**
+	 * Returns the x-coordinate of the start of segment i.
+	 */
+	public float getX1(int i) {
+		return coords[4*i];
+	}
+
+	/**
+	 * Returns the y-coordinate of the start of segment i.
+	 */
+	public float getY1(int i) {
+		return coords[4*i+1];
+	}
+
+	/**
+	 * Returns the x-coordinate of the end of segment i.
+	 */
+	public float getX2(int i) {
+		return coords[4*i+2];
+	}
+
+	/**
+	 * Returns the y-coordinate of the end of segment i.
+	 */
+	public float getY2(int i) {
+		return coords[4*i+3];
+	}
+
+	/**
+	 * Returns the ARGB color of segment i, which can be INHERITED_COLOR.
+	 */
+	public int getColor(int i) {
+		return colors[i];
+	}
+
+	/**
+	 * Returns the line width of segment i, which can be INHERITED_WIDTH (NaN).
+	 */
+	public float getWidth(int i) {
+		return widths[i];
+	}
+
+	/**
+	 * Returns the color in use at the end of the buffer, which can be INHERITED_COLOR.
+	 */
+	public int getFinalColor() {
+		return finalColor;
+	}
+
+	/**
+	 * Returns the line width in use at the end of the buffer, which can be INHERITED_WIDTH (NaN).
+	 */
+	public float getFinalWidth() {
+		return finalWidth;
+	}
+
+}
@@ -0,0 +1,25 @@
+/**
+ * A SegmentListener is notified of every line that is drawn on a TurtlePanel,
+ * as it is drawn, so that the drawing can also be sent somewhere else, such as
+ * to an SVG file by SvgExporter.  Listeners are added to a panel with
+ * TurtlePanel.addSegmentListener().  They are called in the thread that is
+ * drawing, which is usually not the event-handling thread, while holding the
+ * panel's lock, so a listener never gets two calls at once, even when
+ * TurtleHandles are drawing on the panel from other threads.
+ */
+public interface SegmentListener {
+
+	/**
+	 * Called when a line is drawn from (x1,y1) to (x2,y2), in turtle coordinates,
+	 * where x and y go from -10 to 10.
+	 * @param argb the color of the line, as an ARGB value.
+	 * @param width the width of the line, in pixels of the panel's picture.
+	 */
+	public void segmentDrawn(double x1, double y1, double x2, double y2, int argb, double width);
+
+	/**
+	 * Called when the picture is cleared.
+	 */
+	public void pictureCleared();
+
+}
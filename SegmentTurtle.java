@@ -0,0 +1,155 @@
+import java.awt.Color;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A SegmentTurtle is a Turtle that does not draw anything.  It just adds the
+ * lines that it would draw to a SegmentBuffer, which can be drawn later by
+ * TurtlePanel.drawSegments().  A SegmentTurtle is not tied to the GUI, so
+ * several of them can work on different parts of a picture in different
+ * threads; see ParallelFractals.
+ * <p>A new SegmentTurtle has its pen down, and its color and line width are
+ * SegmentBuffer.INHERITED_COLOR and SegmentBuffer.INHERITED_WIDTH, which means
+ * that the lines it draws use whatever color and width were in effect when
+ * its part of the picture started, until color() and lineWidth() are called.
+ */
+public class SegmentTurtle implements Turtle {
+
+	private final SegmentBuffer segments;
+	private double x, y;      // position of the turtle
+	private double heading;   // direction of the turtle, in degrees
+	private boolean penIsUp;
+	private int color = SegmentBuffer.INHERITED_COLOR;    // ARGB color of the trail
+	private float width = SegmentBuffer.INHERITED_WIDTH;  // width of the trail
+	private double detailSize;  // see Turtle.getDetailSize()
+
+	/**
+	 * Create a turtle at (0,0), facing right, that adds its lines to a new buffer.
+	 */
+	public SegmentTurtle() {
+		this(new SegmentBuffer(), 0, 0, 0);
+	}
+
+	/**
+	 * Create a turtle at a given position and heading, that adds its lines to a new buffer.
+	 */
+	public SegmentTurtle(double x, double y, double heading) {
+		this(new SegmentBuffer(), x, y, heading);
+	}
+
+	/**
+	 * Create a turtle at a given position and heading, that adds its lines to a given buffer.
+	 */
+	public SegmentTurtle(SegmentBuffer segments, double x, double y, double heading) {
+		if (segments == null)
+			throw new IllegalArgumentException("The segment buffer can't be null.");
+		this.segments = segments;
+		this.x = x;
+		this.y = y;
+		this.heading = heading;
+	}
+
+	/**
+	 * Returns the buffer that holds the lines drawn by this turtle.
+	 */
+	public SegmentBuffer getSegments() {
+		return segments;
+	}
+
+	private void go(double x2, double y2) {
+		if ( ! penIsUp )
+			segments.add(x, y, x2, y2, color, width);
+		x = x2;
+		y = y2;
+	}
+
+	public void forward(double distance) {
+		int i = TurtlePanel.headingIndex(heading);
+		if (i >= 0)
+			go(x + TurtlePanel.UNIT_X[i] * distance, y + TurtlePanel.UNIT_Y[i] * distance);
+		else {
+			double rad = heading / 180 * Math.PI;
+			go(x + Math.cos(rad) * distance, y + Math.sin(rad) * distance);
+		}
+	}
+
+	public void back(double distance) {
+		forward(-distance);
+	}
+
+	public void move(double dx, double dy) {
+		go(x + dx, y + dy);
+	}
+
+	public void moveTo(double x, double y) {
+		go(x, y);
+	}
+
+	public void turn(double angle) {
+		heading += angle;
+	}
+
+	public void face(double angle) {
+		heading = angle;
+	}
+
+	public void penUp() {
+		penIsUp = true;
+	}
+
+	public void penDown() {
+		penIsUp = false;
+	}
+
+	public void color(Color c) {
+		if (c == null)
+			c = Color.BLACK;
+		color = c.getRGB();
+		segments.setFinalState(color, width);
+	}
+
+	/**
+	 * Set a random spectral color, as in TurtlePanel.  This uses the calling
+	 * thread's ThreadLocalRandom, so turtles in different threads don't compete
+	 * for a shared random number generator.
+	 */
+	public void randomColor() {
+		float hue = ThreadLocalRandom.current().nextFloat();
+		color(Color.getHSBColor(hue, 1, 1));
+	}
+
+	public void lineWidth(double width) {
+		if (width < 1)
+			width = 1;
+		this.width = (float)width;
+		segments.setFinalState(color, this.width);
+	}
+
+	public double getTurtleX() {
+		return x;
+	}
+
+	public double getTurtleY() {
+		return y;
+	}
+
+	public double getHeading() {
+		return heading;
+	}
+
+	/**
+	 * Sets the size, in turtle units, below which shapes are not drawn in detail.
+	 * A SegmentTurtle doesn't know the size of the picture that its lines will be
+	 * drawn on, so this has to be set from outside; see Turtle.getDetailSize().
+	 * The default is 0, which means that every level is drawn.
+	 */
+	public void setDetailSize(double size) {
+		if (size < 0)
+			throw new IllegalArgumentException("The detail size can't be negative.");
+		detailSize = size;
+	}
+
+	public double getDetailSize() {
+		return detailSize;
+	}
+
+}
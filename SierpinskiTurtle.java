@@ -1,3 +1,5 @@
+import java.util.ArrayList;
+
 import javax.swing.JFrame;
 
 /**
@@ -14,8 +16,15 @@ public class SierpinskiTurtle {
 	                                   // Drawing is done by calling methods such as
 	                                   // turtle.forward() to make the turtle move.
 
+	private static boolean concurrent;  // If true, levels 4 and up are drawn by several threads; see main().
+
 
+	/**
+	 * Runs the demo.  With the argument -threads, the triangles from level 4 on
+	 * are drawn by several threads at once, with concurrentSierpinskiTriangle().
+	 */
 	public static void main(String[] args) throws InterruptedException {
+		concurrent = args.length > 0 && args[0].equals("-threads");
 		turtle = new TurtlePanel();  // Makes a panel with default preferred size, 600 pixels.
 		window = new JFrame("Turtle Graphics Test");
 		window.setContentPane(turtle);
@@ -52,7 +61,9 @@ public class SierpinskiTurtle {
 
 	/**
 	 * Draws Sierpinsky triangles with recursion levels from 0 to 9,
-	 * with a delay of one second between them.
+	 * with a delay of one second between them.  If the program was run
+	 * with -threads, the triangles from level 4 on are drawn by several
+	 * threads at once.
 	 */
 	private static void runSierpinskiDemo() {
 		for (int i = 0; i < 10; i++) { 
@@ -70,7 +81,10 @@ public class SierpinskiTurtle {
 			turtle.string("Sierpinski Triangle, level " + i);
 			turtle.moveTo(-8,-6); // lower left corner of the main triangle.
 			turtle.penDown();
-			sierpinskiTriangle(16,i);
+			if (i < 4 || !concurrent)
+				sierpinskiTriangle(16,i);
+			else
+				concurrentSierpinskiTriangle(turtle,16,i);
 			delay(2000); // to seconds to look at the picture
 		}
 	}
@@ -87,10 +101,21 @@ public class SierpinskiTurtle {
 	 *    Larger values give more complex pictures. (Only small values are
 	 *    practical, since after a recursion level of 9 or so, no more detail
 	 *    is added to the picture, and the time it takes to draw the picture
-	 *    increases exponentially.)
+	 *    increases exponentially.  With a detail threshold, set by
+	 *    TurtlePanel.setDetailThreshold(), the recursion stops by itself at
+	 *    that point.)
 	 */
 	private static void sierpinskiTriangle(double size, int recursionLevel) {
-		if (recursionLevel == 0) {  // Just draw a regular triangle.
+		sierpinskiTriangle(turtle, size, recursionLevel);
+	}
+
+
+	/**
+	 * Same as sierpinskiTriangle(size,recursionLevel), but the drawing is done by a
+	 * given Turtle, which does not have to be a TurtlePanel.
+	 */
+	static void sierpinskiTriangle(Turtle turtle, double size, int recursionLevel) {
+		if (recursionLevel == 0 || size < turtle.getDetailSize()) {  // Just draw a regular triangle.
 			turtle.forward(size);
 			turtle.turn(120);
 			turtle.forward(size);
@@ -100,20 +125,80 @@ public class SierpinskiTurtle {
 		}
 		else {  // Draw three smaller Sierpiensky triangles, with a lower recursion level.
 
-			sierpinskiTriangle(size/2, recursionLevel - 1);  // first triangle
+			sierpinskiTriangle(turtle, size/2, recursionLevel - 1);  // first triangle
 
 			turtle.forward(size/2);  // Move to far end of first side.
-			sierpinskiTriangle(size/2, recursionLevel - 1);  // second triangle
+			sierpinskiTriangle(turtle, size/2, recursionLevel - 1);  // second triangle
 			turtle.back(size/2);  // Move back to starting point.
 
 			turtle.turn(60);
 			turtle.forward(size/2); // Move to far end of third side.
 			turtle.turn(-60);
-			sierpinskiTriangle(size/2, recursionLevel - 1);  // third triangle
+			sierpinskiTriangle(turtle, size/2, recursionLevel - 1);  // third triangle
 			turtle.turn(60);
 			turtle.back(size/2);  // Move back to starting point.
 			turtle.turn(-60);
 		}
 	}
 
+
+	/**
+	 * Draws the same Sierpinski triangle as sierpinskiTriangle(size,recursionLevel),
+	 * starting at the position and heading of the panel's turtle, but the triangle
+	 * is split into up to nine smaller triangles, which are drawn at the same time
+	 * by different threads.  Each thread has its own TurtleHandle, made by
+	 * panel.createTurtle(), so the panel's turtle does not move at all.  The
+	 * triangle is drawn with the pen down.  This method returns when all of the
+	 * threads are done.
+	 */
+	static void concurrentSierpinskiTriangle(TurtlePanel panel, double size, int recursionLevel) {
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		startTriangles(panel, panel.getTurtleX(), panel.getTurtleY(), panel.getHeading(),
+				size, recursionLevel, Math.min(2, recursionLevel), threads);
+		for (Thread t : threads) {
+			while (true) {
+				try {
+					t.join();
+					break;
+				}
+				catch (InterruptedException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Splits a triangle, whose lower left corner is at (x,y), into three smaller
+	 * ones splits times, and starts a thread to draw each of the pieces.
+	 */
+	private static void startTriangles(TurtlePanel panel, double x, double y, double heading,
+			double size, int recursionLevel, int splits, ArrayList<Thread> threads) {
+		if (splits > 0) {
+			double half = size/2;
+			double rad = heading / 180 * Math.PI;
+			double rad60 = (heading + 60) / 180 * Math.PI;
+			startTriangles(panel, x, y, heading, half, recursionLevel - 1, splits - 1, threads);
+			startTriangles(panel, x + Math.cos(rad)*half, y + Math.sin(rad)*half, heading,
+					half, recursionLevel - 1, splits - 1, threads);
+			startTriangles(panel, x + Math.cos(rad60)*half, y + Math.sin(rad60)*half, heading,
+					half, recursionLevel - 1, splits - 1, threads);
+			return;
+		}
+		final TurtleHandle handle = panel.createTurtle();
+		handle.penUp();
+		handle.moveTo(x, y);
+		handle.face(heading);
+		handle.penDown();
+		final double triangleSize = size;
+		final int level = recursionLevel;
+		Thread t = new Thread() {
+			public void run() {
+				sierpinskiTriangle(handle, triangleSize, level);
+				handle.flush();
+			}
+		};
+		threads.add(t);
+		t.start();
+	}
+
 }
\ No newline at end of file
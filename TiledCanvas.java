@@ -0,0 +1,252 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A TiledCanvas holds a turtle picture that is too big to fit in one
+ * BufferedImage, such as a 32768-by-32768 print of a fractal.  The picture is
+ * divided into square tiles.  Lines are not drawn when they arrive; each one is
+ * just added to a SegmentBuffer for each tile that its bounding box touches.
+ * A tile is only drawn when it is asked for, by getTile() or writeTiles(), and
+ * different tiles can be drawn at the same time by different threads, so the
+ * memory that is needed is for the lines plus one tile image per thread,
+ * instead of for the whole picture.
+ * <p>A TiledCanvas uses the same coordinate system as a TurtlePanel, with x and
+ * y from -10 to 10, stretched over the whole picture.  It can be attached to a
+ * TurtlePanel with addSegmentListener(), so that it gets a copy of everything
+ * that is drawn on the panel, or it can be given the segments made by a
+ * SegmentTurtle or ParallelFractals with addSegments().  Strings are not
+ * supported.  Lines should only be added by one thread at a time; a TurtlePanel
+ * makes sure of that by calling its listeners while holding its lock.
+ */
+public class TiledCanvas implements SegmentListener {
+
+	private final int width, height;   // size of the whole picture, in pixels
+	private final int tileSize;        // width and height of a tile, in pixels
+	private final int tileColumns, tileRows;
+	private final SegmentBuffer[] tiles;  // the lines that touch each tile, row by row; null if none
+	private double lineWidthScale = 1;
+
+
+	/**
+	 * Create an empty, white canvas.
+	 * @param width the width of the whole picture, in pixels.
+	 * @param height the height of the whole picture, in pixels.
+	 * @param tileSize the width and height of each tile, in pixels.  Tiles at the
+	 *    right and bottom edges are smaller if the picture size is not a multiple
+	 *    of the tile size.
+	 */
+	public TiledCanvas(int width, int height, int tileSize) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("The picture size must be positive: " + width + "x" + height);
+		if (tileSize <= 0)
+			throw new IllegalArgumentException("The tile size must be positive.");
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		tileColumns = (width + tileSize - 1) / tileSize;
+		tileRows = (height + tileSize - 1) / tileSize;
+		if ((long)tileColumns * tileRows > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too many tiles; use a larger tile size.");
+		tiles = new SegmentBuffer[tileColumns * tileRows];
+	}
+
+
+	/**
+	 * Returns the number of columns of tiles.
+	 */
+	public int getTileColumns() {
+		return tileColumns;
+	}
+
+	/**
+	 * Returns the number of rows of tiles.
+	 */
+	public int getTileRows() {
+		return tileRows;
+	}
+
+	/**
+	 * Sets the factor that line widths are multiplied by.  A line width is given in
+	 * pixels of the panel that the turtle draws on, so to make a big copy of a 600
+	 * pixel panel look the same, set this to the width of the canvas divided by 600.
+	 * The default is 1.
+	 */
+	public void setLineWidthScale(double scale) {
+		if (scale <= 0)
+			throw new IllegalArgumentException("The scale must be positive.");
+		lineWidthScale = scale;
+	}
+
+
+	/**
+	 * Adds a line, in turtle coordinates, to the tiles that it touches.
+	 */
+	public void segmentDrawn(double x1, double y1, double x2, double y2, int argb, double lineWidth) {
+		float w = (float)(lineWidth * lineWidthScale);
+		double px1 = (0.5 + x1 / 20.0)*width;
+		double py1 = (0.5 - y1 / 20.0)*height;
+		double px2 = (0.5 + x2 / 20.0)*width;
+		double py2 = (0.5 - y2 / 20.0)*height;
+		double margin = w/2 + 1;  // room for the width of the line and antialiasing
+		int left = tileIndex(Math.min(px1, px2) - margin, tileColumns);
+		int right = tileIndex(Math.max(px1, px2) + margin, tileColumns);
+		int top = tileIndex(Math.min(py1, py2) - margin, tileRows);
+		int bottom = tileIndex(Math.max(py1, py2) + margin, tileRows);
+		for (int row = top; row <= bottom; row++) {
+			for (int col = left; col <= right; col++) {
+				int i = row*tileColumns + col;
+				if (tiles[i] == null)
+					tiles[i] = new SegmentBuffer(16);
+				tiles[i].add(x1, y1, x2, y2, argb, w);
+			}
+		}
+	}
+
+	private int tileIndex(double pixel, int count) {
+		int index = (int)Math.floor(pixel / tileSize);
+		return Math.max(0, Math.min(count - 1, index));
+	}
+
+	/**
+	 * Adds all the segments in a buffer.  Segments with an inherited color or width
+	 * are drawn in red with width 1, the defaults of a new TurtlePanel.
+	 */
+	public void addSegments(SegmentBuffer segments) {
+		int n = segments.size();
+		for (int i = 0; i < n; i++) {
+			int c = segments.getColor(i);
+			if (c == SegmentBuffer.INHERITED_COLOR)
+				c = Color.RED.getRGB();
+			float w = segments.getWidth(i);
+			if (w != w)
+				w = 1;
+			segmentDrawn(segments.getX1(i), segments.getY1(i), segments.getX2(i), segments.getY2(i), c, w);
+		}
+	}
+
+	/**
+	 * Removes all lines, making the picture white again.
+	 */
+	public void pictureCleared() {
+		for (int i = 0; i < tiles.length; i++)
+			tiles[i] = null;
+	}
+
+
+	/**
+	 * Draws one tile and returns it as a new image.  The image is not kept, so
+	 * calling this again draws the tile again.  Different tiles can be drawn in
+	 * different threads at the same time, as long as no lines are being added.
+	 */
+	public BufferedImage getTile(int column, int row) {
+		if (column < 0 || column >= tileColumns || row < 0 || row >= tileRows)
+			throw new IllegalArgumentException("No such tile: column " + column + ", row " + row);
+		int x = column * tileSize;
+		int y = row * tileSize;
+		BufferedImage image = new BufferedImage(Math.min(tileSize, width - x), Math.min(tileSize, height - y),
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.translate(-x, -y);
+		SegmentBuffer segments = tiles[row*tileColumns + column];
+		if (segments != null) {
+			int currentColor = 0;
+			float currentWidth = 0;
+			for (int i = 0; i < segments.size(); i++) {
+				int c = segments.getColor(i);
+				if (i == 0 || c != currentColor) {
+					currentColor = c;
+					g.setColor(new Color(c, true));
+				}
+				float w = segments.getWidth(i);
+				if (i == 0 || w != currentWidth) {
+					currentWidth = w;
+					g.setStroke(TurtlePanel.stroke(w));
+				}
+				g.drawLine( (int)((0.5 + segments.getX1(i) / 20.0)*width), (int)((0.5 - segments.getY1(i) / 20.0)*height),
+						(int)((0.5 + segments.getX2(i) / 20.0)*width), (int)((0.5 - segments.getY2(i) / 20.0)*height) );
+			}
+		}
+		g.dispose();
+		return image;
+	}
+
+
+	/**
+	 * Draws every tile and writes it to a PNG file named prefix_ROW_COLUMN.png in
+	 * a directory, using all of the available processors.  Each thread only holds
+	 * the image of the tile that it is working on.
+	 */
+	public void writeTiles(File directory, String prefix) throws IOException {
+		try {
+			ForkJoinPool.commonPool().invoke(new TileTask(directory, prefix, 0, tiles.length));
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Draws and writes the tiles numbered from start to end-1, splitting the range
+	 * in half until it is one tile.
+	 */
+	private class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final File directory;
+		private final String prefix;
+		private final int start, end;
+		TileTask(File directory, String prefix, int start, int end) {
+			this.directory = directory;
+			this.prefix = prefix;
+			this.start = start;
+			this.end = end;
+		}
+		protected void compute() {
+			if (end - start > 1) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new TileTask(directory, prefix, start, middle), new TileTask(directory, prefix, middle, end));
+				return;
+			}
+			int row = start / tileColumns;
+			int col = start % tileColumns;
+			File file = new File(directory, prefix + "_" + row + "_" + col + ".png");
+			try {
+				if ( ! ImageIO.write(getTile(col, row), "png", file) )
+					throw new IOException("No PNG writer is available.");
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+
+	/**
+	 * Renders a level 10 Koch curve as a large tiled picture.
+	 * <p>Usage:  java -Djava.awt.headless=true TiledCanvas [size] [tileSize] [directory]
+	 * <br>where size is the width and height of the picture (default 16384), tileSize
+	 * is the size of the tiles (default 1024), and directory is where the tiles are
+	 * written (default the current directory).
+	 */
+	public static void main(String[] args) throws IOException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 16384;
+		int tileSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		File dir = new File(args.length > 2 ? args[2] : ".");
+		long start = System.nanoTime();
+		TiledCanvas canvas = new TiledCanvas(size, size, tileSize);
+		canvas.addSegments(ParallelFractals.generate(ParallelFractals.KOCH, -10, -3, 0, 20, 10));
+		canvas.writeTiles(dir, "koch");
+		System.out.printf("%d tiles written in %.1f seconds%n",
+				canvas.getTileColumns() * canvas.getTileRows(), (System.nanoTime() - start) / 1e9);
+	}
+
+}
@@ -0,0 +1,96 @@
+import java.awt.Color;
+
+/**
+ * The commands that a turtle understands.  A Turtle has a position, in a
+ * coordinate system that extends from -10 to 10 horizontally and vertically,
+ * a heading, given in degrees counterclockwise from facing right, a pen that
+ * can be up or down, and a color and line width for the trail that it leaves
+ * when the pen is down.  TurtlePanel is a Turtle that draws on the screen;
+ * SegmentTurtle is a Turtle that just collects the lines that it draws in
+ * a SegmentBuffer.  The recursive drawing methods in TurtleGraphics and
+ * SierpinskiTurtle can use any kind of Turtle.
+ */
+public interface Turtle {
+
+	/**
+	 * Move the turtle forward in the direction it is facing for a given distance.
+	 */
+	public void forward(double distance);
+
+	/**
+	 * Move the turtle backwards for a given distance; the same as forward(-distance).
+	 */
+	public void back(double distance);
+
+	/**
+	 * Move the turtle dx units horizontally and dy units vertically, without
+	 * changing its heading.
+	 */
+	public void move(double dx, double dy);
+
+	/**
+	 * Move the turtle to the point (x,y), without changing its heading.
+	 */
+	public void moveTo(double x, double y);
+
+	/**
+	 * Turn the turtle through a given angle, in degrees.  Positive angles turn left.
+	 */
+	public void turn(double angle);
+
+	/**
+	 * Turn the turtle to face in a given direction, in degrees.
+	 */
+	public void face(double angle);
+
+	/**
+	 * Raise the turtle's pen, so it doesn't leave a trail when it moves.
+	 */
+	public void penUp();
+
+	/**
+	 * Lower the turtle's pen, so it leaves a trail when it moves.
+	 */
+	public void penDown();
+
+	/**
+	 * Set the color of the turtle's trail.  A null value is treated as black.
+	 */
+	public void color(Color c);
+
+	/**
+	 * Set the color of the turtle's trail to a random spectral color.
+	 */
+	public void randomColor();
+
+	/**
+	 * Set the width of the turtle's trail, in pixels.  Values less than 1 are treated as 1.
+	 */
+	public void lineWidth(double width);
+
+	/**
+	 * Returns the x-coordinate of the turtle's position.
+	 */
+	public double getTurtleX();
+
+	/**
+	 * Returns the y-coordinate of the turtle's position.
+	 */
+	public double getTurtleY();
+
+	/**
+	 * Returns the direction that the turtle is facing, in degrees.
+	 */
+	public double getHeading();
+
+	/**
+	 * Returns the size, in turtle units, of a shape that is too small to show any
+	 * detail.  The recursive drawing methods in TurtleGraphics and SierpinskiTurtle
+	 * draw a part of the picture that is smaller than this as if it were at level
+	 * zero, instead of recursing further, so that any level can be drawn in a
+	 * bounded amount of time.  A value of zero means that pictures are always
+	 * drawn to the full level.
+	 */
+	public double getDetailSize();
+
+}
@@ -6,6 +6,7 @@
 import javax.swing.JFrame;
 
 import java.awt.Color;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A program that makes pictures by telling a virtual "turtle"
@@ -30,21 +31,29 @@ public class TurtleGraphics {
 	 */
 	
 	public static void square(double size, int level) {
+		square(turtle, size, level);
+	}
+
+	/**
+	 * Same as square(size,level), but the drawing is done by a given Turtle, which
+	 * does not have to be a TurtlePanel.
+	 */
+	public static void square(Turtle turtle, double size, int level) {
 		
-		if(level == 0){
+		if(level == 0 || size < turtle.getDetailSize()){
 				turtle.forward(size);
 			
 		}else {
 			
-			square(size/3, level-1);
+			square(turtle, size/3, level-1);
 			turtle.turn(90);
-			square(size/3, level-1);
+			square(turtle, size/3, level-1);
 			turtle.turn(-90);
-			square(size/3, level-1);
+			square(turtle, size/3, level-1);
 			turtle.turn(-90);
-			square(size/3, level-1);
+			square(turtle, size/3, level-1);
 			turtle.turn(90);
-			square(size/3, level-1);
+			square(turtle, size/3, level-1);
 		}
 		
 		
@@ -56,12 +65,22 @@ public class TurtleGraphics {
 	 *@param level takes a int 
 	 */
 	public static void randomTree(double size, int level) {
+		randomTree(turtle, size, level);
+	}
+
+	/**
+	 * Same as randomTree(size,level), but the drawing is done by a given Turtle, which
+	 * does not have to be a TurtlePanel.  The random lengths come from the calling
+	 * thread's ThreadLocalRandom, so the parts of a tree drawn by ParallelFractals
+	 * in different threads don't compete for one random number generator.
+	 */
+	public static void randomTree(Turtle turtle, double size, int level) {
 			
 		
 		int convert = (int) size;
-		double s = Math.random()*size/2 + size/2+0.1;
+		double s = ThreadLocalRandom.current().nextDouble()*size/2 + size/2+0.1;
 		
-		if(level == 0) {
+		if(level == 0 || size < turtle.getDetailSize()) {
 			
 			turtle.forward(s);
 			turtle.back(s);
@@ -71,11 +90,11 @@ public class TurtleGraphics {
 			turtle.randomColor();
 			turtle.forward(s/2);
 			turtle.turn(45);
-			randomTree(s/3,level-1);
+			randomTree(turtle, s/3,level-1);
 			turtle.turn(-90);
-			randomTree(s/3,level-1);
+			randomTree(turtle, s/3,level-1);
 			turtle.turn(45);
-			randomTree(s/2,level-1);
+			randomTree(turtle, s/2,level-1);
 			turtle.back(s/2);
 			
 		}
@@ -88,8 +107,16 @@ public class TurtleGraphics {
 	 */
 	
 	public static void Tree(double size, int level) {
+		Tree(turtle, size, level);
+	}
+
+	/**
+	 * Same as Tree(size,level), but the drawing is done by a given Turtle, which
+	 * does not have to be a TurtlePanel.
+	 */
+	public static void Tree(Turtle turtle, double size, int level) {
 
-		if(level == 0){
+		if(level == 0 || size < turtle.getDetailSize()){
 			
 			turtle.color(Color.GREEN);
 			turtle.forward(size);
@@ -102,10 +129,10 @@ public class TurtleGraphics {
 			turtle.forward(size/2);
 			turtle.turn(45);
 			turtle.color(Color.RED);		
-			Tree(size/2,level-1);
+			Tree(turtle, size/2,level-1);
 			turtle.turn(-90);
 			turtle.color(Color.RED);	
-			Tree(size/2,level-1);
+			Tree(turtle, size/2,level-1);
 			turtle.turn(45);
 			turtle.color(Color.RED);
 			turtle.back(size/2);
@@ -119,20 +146,28 @@ public class TurtleGraphics {
 	 *@param level takes a int 
 	 */
 	public static void koch(double size, int level) {
+		koch(turtle, size, level);
+	}
+
+	/**
+	 * Same as koch(size,level), but the drawing is done by a given Turtle, which
+	 * does not have to be a TurtlePanel.
+	 */
+	public static void koch(Turtle turtle, double size, int level) {
 		
-		if(level == 0){
+		if(level == 0 || size < turtle.getDetailSize()){
 			
 			turtle.forward(size);
 			
 		} else {
 			
-			koch(size/3, level-1);
+			koch(turtle, size/3, level-1);
 			turtle.turn(60);
-			koch(size/3, level-1);
+			koch(turtle, size/3, level-1);
 			turtle.turn(-120);
-			koch(size/3, level-1);
+			koch(turtle, size/3, level-1);
 			turtle.turn(60);
-			koch(size/3, level-1);
+			koch(turtle, size/3, level-1);
 			
 		}
 	}
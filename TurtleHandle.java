@@ -0,0 +1,155 @@
+import java.awt.Color;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A TurtleHandle is one of several turtles that draw on the same TurtlePanel.
+ * It is made by TurtlePanel.createTurtle(), and it has its own position,
+ * heading, pen, color and line width, so it doesn't interfere with the
+ * panel's own turtle or with other handles.  Different handles can be used by
+ * different threads at the same time, for example to draw different parts of
+ * a fractal at once; see SierpinskiTurtle.concurrentSierpinskiTriangle().
+ * <p>A handle does not draw each line as it moves.  The lines are added to a
+ * SegmentBuffer that belongs to the handle, and when the buffer is full, or
+ * when flush() is called, all of its lines are drawn onto the panel at once,
+ * while holding the panel's lock.  So the threads only compete for the panel
+ * once every few thousand lines.  The thread that uses a handle must call
+ * flush() when it is done, or the last lines will not show up.
+ * <p>A TurtleHandle itself should only be used by one thread at a time.
+ */
+public class TurtleHandle implements Turtle {
+
+	private static final int FLUSH_SIZE = 4096;  // Number of segments that are collected before they are drawn.
+
+	private final TurtlePanel panel;
+	private final SegmentBuffer segments = new SegmentBuffer(FLUSH_SIZE);
+	private double x, y;       // position of the turtle
+	private double heading;    // direction of the turtle, in degrees
+	private int headingIndex;  // index in TurtlePanel.UNIT_X and UNIT_Y for heading, or -1
+	private boolean penIsUp;
+	private int color;         // ARGB color of the trail
+	private float width;       // width of the trail
+
+
+	/**
+	 * Create a handle for a panel.  This is called by TurtlePanel.createTurtle().
+	 */
+	TurtleHandle(TurtlePanel panel, double x, double y, double heading, boolean penIsUp, int color, float width) {
+		this.panel = panel;
+		this.x = x;
+		this.y = y;
+		this.heading = heading;
+		this.headingIndex = TurtlePanel.headingIndex(heading);
+		this.penIsUp = penIsUp;
+		this.color = color;
+		this.width = width;
+	}
+
+
+	/**
+	 * Returns the panel that this turtle draws on.
+	 */
+	public TurtlePanel getPanel() {
+		return panel;
+	}
+
+	/**
+	 * Draws any lines that have not yet been drawn onto the panel.
+	 */
+	public void flush() {
+		if (segments.size() > 0) {
+			panel.drawHandleSegments(segments);
+			segments.reset();
+		}
+	}
+
+	private void go(double x2, double y2) {
+		if ( ! penIsUp ) {
+			segments.add(x, y, x2, y2, color, width);
+			if (segments.size() >= FLUSH_SIZE)
+				flush();
+		}
+		x = x2;
+		y = y2;
+	}
+
+	public void forward(double distance) {
+		if (headingIndex >= 0)
+			go(x + TurtlePanel.UNIT_X[headingIndex] * distance, y + TurtlePanel.UNIT_Y[headingIndex] * distance);
+		else {
+			double rad = heading / 180 * Math.PI;
+			go(x + Math.cos(rad) * distance, y + Math.sin(rad) * distance);
+		}
+	}
+
+	public void back(double distance) {
+		forward(-distance);
+	}
+
+	public void move(double dx, double dy) {
+		go(x + dx, y + dy);
+	}
+
+	public void moveTo(double x, double y) {
+		go(x, y);
+	}
+
+	public void turn(double angle) {
+		heading += angle;
+		headingIndex = TurtlePanel.headingIndex(heading);
+	}
+
+	public void face(double angle) {
+		heading = angle;
+		headingIndex = TurtlePanel.headingIndex(heading);
+	}
+
+	public void penUp() {
+		penIsUp = true;
+	}
+
+	public void penDown() {
+		penIsUp = false;
+	}
+
+	public void color(Color c) {
+		if (c == null)
+			c = Color.BLACK;
+		color = c.getRGB();
+	}
+
+	/**
+	 * Set a random spectral color, as in TurtlePanel.  This uses the calling
+	 * thread's ThreadLocalRandom, so handles in different threads don't compete
+	 * for a shared random number generator.
+	 */
+	public void randomColor() {
+		float hue = ThreadLocalRandom.current().nextFloat();
+		color(Color.getHSBColor(hue, 1, 1));
+	}
+
+	public void lineWidth(double width) {
+		if (width < 1)
+			width = 1;
+		this.width = (float)width;
+	}
+
+	public double getTurtleX() {
+		return x;
+	}
+
+	public double getTurtleY() {
+		return y;
+	}
+
+	public double getHeading() {
+		return heading;
+	}
+
+	/**
+	 * Returns the detail size of the panel; see TurtlePanel.setDetailThreshold().
+	 */
+	public double getDetailSize() {
+		return panel.getDetailSize();
+	}
+
+}
@@ -1,6 +1,16 @@
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.swing.*;
 
@@ -21,12 +31,13 @@ import javax.swing.*;
  * direction is different from the unit in the vertical direction.  Note that
  * drawing strings won't quite work correctly in that case.)
  */
-public class TurtlePanel extends JPanel {
+public class TurtlePanel extends JPanel implements Turtle {
 
 	private static Color transparentBlack = new Color(0,0,0,150);
 
 	private double turtleX, turtleY;   // Location of the turtle.
 	private double facing;  // What direction the turtle is facing, given in degrees.
+	private int headingIndex;  // facing/15, in the range 0 to 23, if facing is a multiple of 15 degrees; otherwise -1.
 	private boolean penIsUp;  // Tells whether the pen is currently raised.
 
 	private boolean turtleIsVisible = true; // Tells whether turtle should be displayed.
@@ -35,6 +46,55 @@ public class TurtlePanel extends JPanel {
 
 	private BufferedImage canvas;     // The offscreen, official copy of the picture, without the turtle.
 	private Graphics canvasGraphics;  // A graphics context for drawing on the canvas.
+	private double lineWidth = 1;     // The current line width, as set by lineWidth().
+	private double detailThreshold;   // Size in pixels below which shapes are not drawn in detail; see setDetailThreshold().
+	private volatile int canvasVersion;  // Incremented whenever the canvas is drawn on.
+
+	private VolatileImage scaledCanvas;  // Copy of the canvas at the size of the panel, if they are different sizes.
+	private int scaledVersion = -1;      // The canvasVersion that scaledCanvas was copied from.
+
+	private TurtleRecording recording;  // If non-null, all drawing commands are added to this recording.
+	private volatile SegmentListener[] segmentListeners;  // Listeners for the lines that are drawn, or null; called only while holding the panel's lock.
+
+	private static final int BATCH_CAPACITY = 16384;  // Number of ints in the batch buffer (four per line).
+
+	private boolean batchDrawing;  // Tells whether lines are collected in batch instead of being drawn at once.
+	private int[] batch;           // Pixel coordinates of the lines that are waiting to be drawn, as x1,y1,x2,y2.
+	private int batchSize;         // Number of ints in use in the batch array.
+
+	private Timer frameTimer;          // If non-null, repaints the panel at a fixed frame rate; see setFrameRate().
+	private int segmentsPerFrame;      // Number of changes the turtle can make per frame; 0 means no limit.
+	private int changesThisFrame;      // Number of changes made since the last frame, for segmentsPerFrame.
+	private volatile boolean pictureDirty;    // Set when the picture changes, cleared when the frame timer repaints.
+	private volatile boolean flushRequested;  // Set by the frame timer to ask the drawing thread to flush the batch.
+	private final Object frameLock = new Object();  // Lock for waiting for the next frame.
+	private long frameCount;           // Number of frames so far; protected by frameLock.
+
+	private static final int RING_CAPACITY = 1 << 16;  // Number of ints in the ring buffer (four per record).
+	private static final int STATE_RECORD = Integer.MIN_VALUE;  // First int of a record that sets color and width.
+
+	private int[] ring;                // Records for the render thread: x1,y1,x2,y2 of a line, or STATE_RECORD,argb,width.
+	private volatile long ringHead;    // Number of ints ever put into the ring; written only by the drawing thread.
+	private volatile long ringTail;    // Number of ints ever taken out of the ring; written only by the render thread.
+	private Thread renderThread;       // The thread that draws the lines in async mode, or null.
+	private volatile boolean renderStop;  // Tells the render thread to stop once the ring is empty.
+	private volatile Pose pose;        // The turtle's position and heading, for paintComponent() in async mode.
+
+	private Graphics2D handleGraphics;  // For drawing the lines of TurtleHandles; used only while holding the panel's lock.
+
+	/**
+	 * A snapshot of the turtle's position and heading.  A new one is published
+	 * after every move or turn in async mode, so the event thread can draw the
+	 * turtle without looking at fields that the drawing thread is changing.
+	 */
+	private static final class Pose {
+		final double x, y, facing;
+		Pose(double x, double y, double facing) {
+			this.x = x;
+			this.y = y;
+			this.facing = facing;
+		}
+	}
 
 	/**
 	 * Create a TurtlePanel with a preferred size of 600-by-600.
@@ -50,7 +110,7 @@ public class TurtlePanel extends JPanel {
 	 */
 	public TurtlePanel(int preferredSize) {
 		setPreferredSize( new Dimension(preferredSize,preferredSize) );
-		canvas = new BufferedImage(preferredSize,preferredSize,BufferedImage.TYPE_INT_ARGB);
+		canvas = new BufferedImage(preferredSize,preferredSize,BufferedImage.TYPE_INT_RGB);
 		canvasGraphics = canvas.createGraphics();
 		canvasGraphics.setColor(Color.WHITE);
 		canvasGraphics.fillRect(0, 0, preferredSize, preferredSize);
@@ -64,8 +124,18 @@ public class TurtlePanel extends JPanel {
 	 * is visible, draw it on top of the picture from the panel.
 	 */
 	synchronized protected void paintComponent(Graphics g) {
-		g.drawImage(canvas,0,0,getWidth(),getHeight(),null);
+		if (getWidth() == canvas.getWidth() && getHeight() == canvas.getHeight())
+			g.drawImage(canvas,0,0,null);  // The usual case:  no scaling is needed.
+		else
+			drawScaledCanvas(g);
 		if (turtleIsVisible) { // Draw the turtle.
+			double turtleX = this.turtleX, turtleY = this.turtleY, facing = this.facing;
+			Pose p = pose;
+			if (p != null) {  // In async mode, the fields can be changing; use the snapshot.
+				turtleX = p.x;
+				turtleY = p.y;
+				facing = p.facing;
+			}
 			Graphics2D g2 = (Graphics2D)g;
 			((Graphics2D)g).setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 			Path2D path = new Path2D.Double();
@@ -81,6 +151,48 @@ public class TurtlePanel extends JPanel {
 		}
 	}
 
+	/**
+	 * Draws the canvas on a panel that is not the same size as the canvas.  The
+	 * scaled picture is kept in a VolatileImage, which can be stored in video
+	 * memory, and it is only scaled again when the canvas or the size of the
+	 * panel changes.  The contents of a VolatileImage can be lost at any time, for
+	 * example when the screen mode changes; if that happens, they are restored
+	 * from the canvas.  If a VolatileImage can't be made, as in a headless
+	 * program, the canvas is just scaled as it is drawn.
+	 */
+	private void drawScaledCanvas(Graphics g) {
+		int width = getWidth();
+		int height = getHeight();
+		do {
+			if (scaledCanvas == null || scaledCanvas.getWidth() != width || scaledCanvas.getHeight() != height) {
+				if (scaledCanvas != null)
+					scaledCanvas.flush();
+				scaledCanvas = createVolatileImage(width, height);
+				scaledVersion = -1;
+				if (scaledCanvas == null) {
+					g.drawImage(canvas,0,0,width,height,null);
+					return;
+				}
+			}
+			int status = scaledCanvas.validate(getGraphicsConfiguration());
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+				scaledCanvas.flush();
+				scaledCanvas = null;
+				continue;
+			}
+			if (status == VolatileImage.IMAGE_RESTORED)
+				scaledVersion = -1;
+			int version = canvasVersion;
+			if (scaledVersion != version) {
+				Graphics2D g2 = scaledCanvas.createGraphics();
+				g2.drawImage(canvas,0,0,width,height,null);
+				g2.dispose();
+				scaledVersion = version;
+			}
+			g.drawImage(scaledCanvas,0,0,null);
+		} while (scaledCanvas == null || scaledCanvas.contentsLost());
+	}
+
 	/**
 	 * Method used internally to move the turtle from its current position
 	 * to (x,y).  If the pen is down, a line is drawn between the two points.
@@ -91,23 +203,338 @@ public class TurtlePanel extends JPanel {
 		double ty = turtleY;
 		turtleX = x;
 		turtleY = y;
+		if (renderThread != null && turtleIsVisible)
+			pose = new Pose(x, y, facing);
+		if (recording != null)
+			recording.add(penIsUp ? TurtleRecording.MOVE_TO : TurtleRecording.LINE_TO, x, y);
 		if ( ! penIsUp ) {
+			if (segmentListeners != null)
+				fireSegmentDrawn(tx, ty, x, y, canvasGraphics.getColor().getRGB(), lineWidth);
 			double x1 = (0.5 + tx / 20.0)*canvas.getWidth();
 			double y1 = (0.5 - ty / 20.0)*canvas.getHeight();
 			double x2 = (0.5 + x / 20.0)*canvas.getWidth();
 			double y2 = (0.5 - y / 20.0)*canvas.getHeight();
+			if (renderThread != null) {
+				putRecord( pixel(x1), pixel(y1), pixel(x2), pixel(y2) );
+				if (frameTimer != null && autoRepaint)
+					pace();
+				return;
+			}
+			if (batchDrawing) {
+				addToBatch( (int)x1, (int)y1, (int)x2, (int)y2 );
+				if (flushRequested) {
+					flushRequested = false;
+					flush();
+				}
+				else if (frameTimer != null && autoRepaint)
+					pace();
+				return;
+			}
 			synchronized(this) {
 				canvasGraphics.drawLine( (int)x1, (int)y1, (int)x2, (int)y2 );
+				canvasVersion++;
 			}
 			if (autoRepaint) {
-				repaint();
-				delay(autoDelay);
+				pictureChanged();
 			}
 		}
 		else if (turtleIsVisible && autoRepaint) {
+			pictureChanged();
+		}
+	}
+
+	/**
+	 * Adds a line to the pending batch.  The batch is drawn when it fills up.
+	 */
+	private void addToBatch(int x1, int y1, int x2, int y2) {
+		if (batchSize == batch.length)
+			flush();
+		batch[batchSize++] = x1;
+		batch[batchSize++] = y1;
+		batch[batchSize++] = x2;
+		batch[batchSize++] = y2;
+	}
+
+	/**
+	 * Draws any lines that are waiting in the batch (see setBatchDrawing()) onto
+	 * the picture, and repaints the panel if autorepaint is on.  This is done
+	 * automatically when the batch is full, when the color or line width
+	 * is changed, when a string is drawn, and when the picture is cleared.  It does
+	 * nothing if batch drawing is off or the batch is empty.
+	 */
+	public void flush() {
+		if (renderThread != null)
+			waitForRenderer();
+		if (batchSize == 0)
+			return;
+		synchronized(this) {
+			for (int i = 0; i < batchSize; i += 4)
+				canvasGraphics.drawLine( batch[i], batch[i+1], batch[i+2], batch[i+3] );
+			canvasVersion++;
+		}
+		batchSize = 0;
+		if (autoRepaint) {
+			pictureChanged();
+		}
+	}
+
+	/**
+	 * Turns batch drawing on or off.  The default is off.  When batch drawing
+	 * is on, lines drawn by the turtle are not drawn onto the picture one at a
+	 * time.  Instead, the pixel coordinates of consecutive lines with the same
+	 * color and line width are collected in an array, and they are all drawn
+	 * together, while holding the panel's lock just once, when flush() is
+	 * called, either by the program or automatically (see flush()).  Repainting
+	 * and the automatic delay also happen once per batch instead of once per
+	 * line, so long drawings are much faster, but the picture on the screen is
+	 * only updated when the batch is flushed.  The lines are drawn exactly as
+	 * they would be without batching.  Turning batch drawing off flushes any
+	 * pending lines.
+	 */
+	public void setBatchDrawing(boolean batch) {
+		if (!batch)
+			flush();
+		else if (this.batch == null)
+			this.batch = new int[BATCH_CAPACITY];
+		batchDrawing = batch;
+	}
+
+	/**
+	 * Turns async drawing on or off.  The default is off.  In async mode, the
+	 * thread that moves the turtle does not draw lines itself, and never waits
+	 * for the panel's lock, which is also used while the panel is painted.
+	 * Instead, it puts the pixel coordinates of each line, and every change of
+	 * color or line width, into a ring buffer of ints, and a separate render
+	 * thread takes them out and draws them onto the picture, a few thousand at
+	 * a time, and then repaints the panel.  The turtle is drawn from a snapshot
+	 * of its position and heading, so the event thread never sees a half-updated
+	 * turtle.  The drawing thread only waits if the ring buffer is full, so the
+	 * speed of the turtle doesn't depend on how long painting takes.  The
+	 * automatic delay is not used for lines in async mode.  Strings, clear(),
+	 * drawSegments() and flush() first wait until the render thread has drawn
+	 * everything in the buffer.  Turning async mode off also waits for that, and
+	 * then stops the render thread.  Only one thread should draw with the turtle.
+	 */
+	public void setAsyncDrawing(boolean async) {
+		if (async == (renderThread != null))
+			return;
+		if (async) {
+			flush();
+			if (ring == null)
+				ring = new int[RING_CAPACITY];
+			final Graphics2D g = canvas.createGraphics();
+			g.setRenderingHints(((Graphics2D)canvasGraphics).getRenderingHints());
+			g.setColor(canvasGraphics.getColor());
+			g.setStroke(stroke(lineWidth));
+			renderStop = false;
+			pose = new Pose(turtleX, turtleY, facing);
+			renderThread = new Thread("TurtlePanel renderer") {
+				public void run() {
+					render(g);
+				}
+			};
+			renderThread.setDaemon(true);
+			renderThread.start();
+		}
+		else {
+			waitForRenderer();
+			renderStop = true;
+			LockSupport.unpark(renderThread);
+			try {
+				renderThread.join();
+			}
+			catch (InterruptedException e) {
+			}
+			renderThread = null;
+			pose = null;
+		}
+	}
+
+	private static int pixel(double coordinate) {
+		// Converts a pixel coordinate to an int, as drawLine() would need, but
+		// keeps it out of the way of STATE_RECORD.
+		return Math.max((int)coordinate, STATE_RECORD + 1);
+	}
+
+	/**
+	 * Puts a record of four ints into the ring buffer, waiting if it is full.
+	 * This is only called by the drawing thread.
+	 */
+	private void putRecord(int a, int b, int c, int d) {
+		long head = ringHead;
+		while (head - ringTail > RING_CAPACITY - 4)
+			LockSupport.parkNanos(50000);
+		int i = (int)head & (RING_CAPACITY - 1);
+		ring[i] = a;
+		ring[i+1] = b;
+		ring[i+2] = c;
+		ring[i+3] = d;
+		ringHead = head + 4;  // A volatile write, which makes the record visible to the render thread.
+	}
+
+	/**
+	 * Waits until the render thread has drawn everything in the ring buffer.
+	 */
+	private void waitForRenderer() {
+		while (ringTail != ringHead && renderThread.isAlive())
+			LockSupport.parkNanos(100000);
+	}
+
+	/**
+	 * The body of the render thread, which takes records out of the ring buffer
+	 * and draws them with its own graphics context.  It takes the panel's lock
+	 * once for up to 4096 records, and then repaints the panel.
+	 */
+	private void render(Graphics2D g) {
+		int currentColor = g.getColor().getRGB();
+		while (true) {
+			long tail = ringTail;
+			long head = ringHead;
+			if (tail == head) {
+				if (renderStop)
+					break;
+				LockSupport.parkNanos(1000000);
+				continue;
+			}
+			long end = Math.min(head, tail + 4*4096);
+			synchronized(this) {
+				for ( ; tail < end; tail += 4) {
+					int i = (int)tail & (RING_CAPACITY - 1);
+					if (ring[i] == STATE_RECORD) {
+						if (ring[i+1] != currentColor) {
+							currentColor = ring[i+1];
+							g.setColor(new Color(currentColor, true));
+						}
+						g.setStroke(stroke(Float.intBitsToFloat(ring[i+2])));
+					}
+					else
+						g.drawLine( ring[i], ring[i+1], ring[i+2], ring[i+3] );
+				}
+				canvasVersion++;
+			}
+			ringTail = tail;
+			changedByOtherThread();
+		}
+		g.dispose();
+	}
+
+	/**
+	 * Called when a thread other than the turtle's has changed the picture.  If
+	 * autorepaint is on, this calls repaint(), or with a frame rate, notes that the
+	 * next frame needs to be repainted.  It never waits.
+	 */
+	private void changedByOtherThread() {
+		if (autoRepaint) {
+			if (frameTimer == null)
+				repaint();
+			else
+				pictureDirty = true;
+		}
+	}
+
+	/**
+	 * Called whenever the picture or the turtle changes, if autorepaint is on.
+	 * Without a frame rate, this just calls repaint() and waits for the automatic
+	 * delay.  With a frame rate, it only notes that the next frame needs to be
+	 * repainted, and then waits if the turtle has used up its changes for this frame.
+	 */
+	private void pictureChanged() {
+		if (frameTimer == null) {
 			repaint();
 			delay(autoDelay);
 		}
+		else {
+			pictureDirty = true;
+			pace();
+		}
+	}
+
+	/**
+	 * Counts a change made by the turtle, and if segmentsPerFrame changes have
+	 * been made since the last frame, waits for the frame timer to start the
+	 * next frame.  The drawing thread only ever waits for the timer, never for
+	 * the repaint itself.  On the event thread, the change is only counted, since
+	 * the timer runs on that same thread and could never start the next frame.
+	 */
+	private void pace() {
+		if (segmentsPerFrame <= 0 || ++changesThisFrame < segmentsPerFrame)
+			return;
+		changesThisFrame = 0;
+		if (SwingUtilities.isEventDispatchThread())
+			return;
+		synchronized(frameLock) {
+			long frame = frameCount;
+			while (frame == frameCount && frameTimer != null) {
+				try {
+					frameLock.wait(100);
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts a new frame; this is called by the frame timer on the event thread.
+	 */
+	private void nextFrame() {
+		if (batchDrawing && batchSize > 0)
+			flushRequested = true;
+		if (pictureDirty) {
+			pictureDirty = false;
+			repaint();
+		}
+		synchronized(frameLock) {
+			frameCount++;
+			frameLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Sets a target frame rate for showing the picture.  The default, zero, means
+	 * that there is no frame rate:  the panel is repainted after every change to
+	 * the picture, and the turtle then sleeps for the automatic delay (see
+	 * setAutoDelay()).  With a positive frame rate, changes to the picture only
+	 * mark it as needing to be repainted, and a timer repaints it at most that many
+	 * times per second.  The automatic delay is not used.  Instead, the speed of the
+	 * turtle is given by setSegmentsPerFrame().  Autorepaint must be on for the
+	 * picture to be shown.
+	 * @param framesPerSecond the number of times per second to repaint the picture,
+	 *    for example 60.  A value <= 0 turns off the frame timer.
+	 */
+	public void setFrameRate(int framesPerSecond) {
+		if (frameTimer != null) {
+			frameTimer.stop();
+			frameTimer = null;
+			synchronized(frameLock) {
+				frameLock.notifyAll();  // Don't leave the drawing thread waiting for a frame.
+			}
+		}
+		if (framesPerSecond > 0) {
+			frameTimer = new Timer(Math.max(1, 1000 / framesPerSecond), new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					nextFrame();
+				}
+			});
+			frameTimer.setCoalesce(true);
+			frameTimer.start();
+		}
+	}
+
+	/**
+	 * Sets the speed of the animation when a frame rate has been set with
+	 * setFrameRate().  The turtle can make this many changes to the picture
+	 * (moves, turns, strings, and so on) in each frame; after that, it waits for
+	 * the next frame.  The default, zero, means that the turtle never waits,
+	 * so the drawing goes as fast as possible and the screen just shows
+	 * the latest picture at each frame.  Drawing that is done on the event
+	 * thread never waits, since the frames are started by a timer on that
+	 * thread; only drawing from other threads is slowed down.
+	 */
+	public void setSegmentsPerFrame(int segments) {
+		segmentsPerFrame = segments;
+		changesThisFrame = 0;
 	}
 
 	/**
@@ -115,12 +542,56 @@ public class TurtlePanel extends JPanel {
 	 * (Note: negative distance will make the turtle back up.)
 	 */
 	public void forward( double distance ) {
-		double rad = facing / 180 * Math.PI;
-		double dx = Math.cos( rad ) * distance;
-		double dy = Math.sin( rad ) * distance;
+		double dx, dy;
+		if (headingIndex >= 0) {
+			dx = UNIT_X[headingIndex] * distance;
+			dy = UNIT_Y[headingIndex] * distance;
+		}
+		else {
+			double rad = facing / 180 * Math.PI;
+			dx = Math.cos( rad ) * distance;
+			dy = Math.sin( rad ) * distance;
+		}
 		go(turtleX + dx, turtleY + dy);
 	}
 
+	/**
+	 * The cosine and sine of the multiples of 15 degrees, from 0 to 345.  All the
+	 * drawings in these programs turn by multiples of 45, 60, 90 or 120 degrees, so
+	 * forward() can look up the direction in these tables instead of computing it.
+	 * The values that are exactly 0, 1/2 or 1 are stored exactly, which Math.cos()
+	 * and Math.sin() don't give for angles such as 60 or 90 degrees, so the turtle
+	 * doesn't drift away from the ideal path after millions of moves.
+	 */
+	static final double[] UNIT_X = new double[24], UNIT_Y = new double[24];
+
+	static {
+		double[] quarter = { 1, Math.cos(Math.PI/12), Math.sqrt(3)/2, Math.sqrt(0.5),
+				0.5, Math.sin(Math.PI/12), 0 };  // cosines of 0, 15, ..., 90 degrees
+		for (int i = 0; i < 24; i++) {
+			int r = i % 6;
+			switch (i / 6) {
+			case 0:  UNIT_X[i] = quarter[r];    break;
+			case 1:  UNIT_X[i] = -quarter[6-r]; break;
+			case 2:  UNIT_X[i] = -quarter[r];   break;
+			default: UNIT_X[i] = quarter[6-r];  break;
+			}
+		}
+		for (int i = 0; i < 24; i++)
+			UNIT_Y[i] = UNIT_X[(i + 18) % 24];  // sin(a) = cos(a - 90)
+	}
+
+	/**
+	 * Returns the index in UNIT_X and UNIT_Y for a heading, or -1 if the heading
+	 * is not a whole multiple of 15 degrees.
+	 */
+	static int headingIndex(double degrees) {
+		double steps = degrees / 15;
+		if (steps != Math.rint(steps) || Math.abs(steps) > 1e15)
+			return -1;
+		return (int)(((long)steps % 24 + 24) % 24);
+	}
+
 	/**
 	 * Move the turtle in the direction opposite from the direction it is facing 
 	 * for a given distance.  This is the same as forward(-distance).  (Note: negative 
@@ -154,9 +625,13 @@ public class TurtlePanel extends JPanel {
 	 */
 	public void turn( double angle ) {
 		facing += angle;
+		headingIndex = headingIndex(facing);
+		if (renderThread != null && turtleIsVisible)
+			pose = new Pose(turtleX, turtleY, facing);
+		if (recording != null)
+			recording.add(TurtleRecording.FACE, facing);
 		if (turtleIsVisible && autoRepaint) {
-			repaint();
-			delay(autoDelay);
+			pictureChanged();
 		}
 	}
 
@@ -167,9 +642,13 @@ public class TurtlePanel extends JPanel {
 	 */
 	public void face( double angle ) {
 		facing = angle;
+		headingIndex = headingIndex(facing);
+		if (renderThread != null && turtleIsVisible)
+			pose = new Pose(turtleX, turtleY, facing);
+		if (recording != null)
+			recording.add(TurtleRecording.FACE, facing);
 		if (turtleIsVisible && autoRepaint) {
-			repaint();
-			delay(autoDelay);
+			pictureChanged();
 		}
 	}
 
@@ -180,6 +659,11 @@ public class TurtlePanel extends JPanel {
 	public void home() {
 		go(0,0);
 		facing = 0;
+		headingIndex = 0;
+		if (renderThread != null && turtleIsVisible)
+			pose = new Pose(turtleX, turtleY, facing);
+		if (recording != null)
+			recording.add(TurtleRecording.FACE, facing);
 		color(Color.RED);
 		lineWidth(1);
 	}
@@ -197,30 +681,336 @@ public class TurtlePanel extends JPanel {
 	 *    the font() method in this class.
 	 */
 	public void string(String str) {
-		Graphics2D g = (Graphics2D) canvasGraphics.create();
+		flush();
+		if (recording != null)
+			recording.add(TurtleRecording.STRING, str);
+		Graphics2D g = (Graphics2D) canvasGraphics;
 		int x = (int)((0.5 + turtleX / 20.0)*canvas.getWidth());  // position in pixels
 		int y = (int)((0.5 - turtleY / 20.0)*canvas.getHeight());
 		double rad = facing / 180 * Math.PI;  // direction in radians
-		double forward = g.getFontMetrics().stringWidth(str);
+		CachedString cached = cachedString(str);
+		double forward = cached.width;
 		forward  =  forward/canvas.getWidth() * 20.0;
-		g.translate(x,y);
-		g.rotate(-rad);
-		g.drawString(str,0,0);
+		synchronized(this) {
+			AffineTransform transform = g.getTransform();
+			g.translate(x,y);
+			g.rotate(-rad);
+			g.drawGlyphVector(cached.glyphs,0,0);
+			g.setTransform(transform);
+			canvasVersion++;
+		}
 		double dx = Math.cos( rad ) * forward;
 		double dy = Math.sin( rad ) * forward;
 		turtleX += dx;
 		turtleY += dy;
 		if (autoRepaint) {
-			repaint();
-			delay(autoDelay);
+			pictureChanged();
 		}
 	}
 
+	/**
+	 * The glyphs and width of a string in the current font, as drawn by string().
+	 */
+	private static class CachedString {
+		GlyphVector glyphs;
+		int width;
+	}
+
+	/**
+	 * Returns the glyphs and width of a string in the current font.  Programs tend
+	 * to draw the same few strings over and over, such as the label in
+	 * SierpinskiTurtle, so the last STRING_CACHE_SIZE strings are kept, and the
+	 * font metrics are kept until the font is changed.
+	 */
+	private CachedString cachedString(String str) {
+		CachedString cached = stringCache.get(str);
+		if (cached == null) {
+			if (fontMetrics == null)
+				fontMetrics = canvasGraphics.getFontMetrics();
+			Graphics2D g = (Graphics2D)canvasGraphics;
+			cached = new CachedString();
+			cached.glyphs = g.getFont().createGlyphVector(g.getFontRenderContext(), str);
+			cached.width = fontMetrics.stringWidth(str);
+			stringCache.put(str, cached);
+		}
+		return cached;
+	}
+
+	private static final int STRING_CACHE_SIZE = 32;
+
+	private FontMetrics fontMetrics;  // Metrics for the current font, or null if not computed yet.
+
+	private final LinkedHashMap<String,CachedString> stringCache =
+			new LinkedHashMap<String,CachedString>(16, 0.75f, true) {
+				protected boolean removeEldestEntry(Map.Entry<String,CachedString> eldest) {
+					return size() > STRING_CACHE_SIZE;
+				}
+			};
+
+	/**
+	 * Creates a new turtle that draws on this panel, but has its own position,
+	 * heading, pen, color and line width, which start out the same as this panel's
+	 * turtle.  Any number of them can be created, and each one can be used by a
+	 * different thread, at the same time as the panel's own turtle.  See TurtleHandle.
+	 */
+	public TurtleHandle createTurtle() {
+		return new TurtleHandle(this, turtleX, turtleY, facing, penIsUp,
+				canvasGraphics.getColor().getRGB(), (float)lineWidth);
+	}
+
+	/**
+	 * Draws the segments of a TurtleHandle onto the picture.  This can be called by
+	 * any thread.  The lines are drawn with a graphics context of their own while
+	 * holding the panel's lock, so the state of the panel's turtle is not touched.
+	 * Segment listeners get the lines, one handle at a time, but they are not
+	 * added to the recording, which is a list of commands for a single turtle.
+	 */
+	void drawHandleSegments(SegmentBuffer segments) {
+		int n = segments.size();
+		if (n == 0)
+			return;
+		synchronized(this) {
+			if (handleGraphics == null) {
+				handleGraphics = canvas.createGraphics();
+				handleGraphics.setRenderingHints(((Graphics2D)canvasGraphics).getRenderingHints());
+			}
+			Graphics2D g = handleGraphics;
+			SegmentListener[] listeners = segmentListeners;
+			int width = canvas.getWidth();
+			int height = canvas.getHeight();
+			for (int i = 0; i < n; i++) {
+				int c = segments.getColor(i);
+				float w = segments.getWidth(i);
+				if (i == 0 || c != segments.getColor(i-1))
+					g.setColor(new Color(c, true));
+				if (i == 0 || w != segments.getWidth(i-1))
+					g.setStroke(stroke(w));
+				double x1 = segments.getX1(i), y1 = segments.getY1(i);
+				double x2 = segments.getX2(i), y2 = segments.getY2(i);
+				if (listeners != null) {
+					for (SegmentListener listener : listeners)
+						listener.segmentDrawn(x1, y1, x2, y2, c, w);
+				}
+				g.drawLine( (int)((0.5 + x1 / 20.0)*width), (int)((0.5 - y1 / 20.0)*height),
+						(int)((0.5 + x2 / 20.0)*width), (int)((0.5 - y2 / 20.0)*height) );
+			}
+			canvasVersion++;
+		}
+		changedByOtherThread();
+	}
+
+	/**
+	 * Draws all the segments in a SegmentBuffer onto the picture, while holding the
+	 * panel's lock just once, and then repaints the panel if autorepaint is on.  The
+	 * segments are drawn with the same coordinate system, colors and line widths as
+	 * lines drawn by the turtle, and they are added to the recording, if there is one.
+	 * Segments with an inherited color or width are drawn with the turtle's current
+	 * color or width.  The turtle does not move, but afterwards it has the final color
+	 * and width of the buffer.  This is used to draw pictures that were made by
+	 * SegmentTurtles, such as the ones made by ParallelFractals.
+	 */
+	public void drawSegments(SegmentBuffer segments) {
+		flush();
+		int n = segments.size();
+		Color startColor = canvasGraphics.getColor();
+		double startWidth = lineWidth;
+		int width = canvas.getWidth();
+		int height = canvas.getHeight();
+		synchronized(this) {
+			Graphics2D g = (Graphics2D)canvasGraphics;
+			int currentColor = startColor.getRGB();
+			float currentWidth = (float)startWidth;
+			float lastX = Float.NaN, lastY = Float.NaN;  // end of the previous segment
+			for (int i = 0; i < n; i++) {
+				int c = segments.getColor(i);
+				if (c == SegmentBuffer.INHERITED_COLOR)
+					c = startColor.getRGB();
+				if (c != currentColor) {
+					currentColor = c;
+					g.setColor(new Color(c, true));
+					if (recording != null)
+						recording.add(TurtleRecording.COLOR, c);
+				}
+				float w = segments.getWidth(i);
+				if (w != w)  // NaN, that is, inherited
+					w = (float)startWidth;
+				if (w != currentWidth) {
+					currentWidth = w;
+					g.setStroke(stroke(w));
+					if (recording != null)
+						recording.add(TurtleRecording.LINE_WIDTH, w);
+				}
+				float x1 = segments.getX1(i);
+				float y1 = segments.getY1(i);
+				float x2 = segments.getX2(i);
+				float y2 = segments.getY2(i);
+				if (recording != null) {
+					if (x1 != lastX || y1 != lastY)
+						recording.add(TurtleRecording.MOVE_TO, x1, y1);
+					recording.add(TurtleRecording.LINE_TO, x2, y2);
+				}
+				lastX = x2;
+				lastY = y2;
+				if (segmentListeners != null)
+					fireSegmentDrawn(x1, y1, x2, y2, currentColor, currentWidth);
+				g.drawLine( (int)((0.5 + x1 / 20.0)*width), (int)((0.5 - y1 / 20.0)*height),
+						(int)((0.5 + x2 / 20.0)*width), (int)((0.5 - y2 / 20.0)*height) );
+			}
+			g.setColor(startColor);
+			g.setStroke(stroke(startWidth));
+			canvasVersion++;
+		}
+		if (recording != null && n > 0) {
+			recording.add(TurtleRecording.MOVE_TO, turtleX, turtleY);
+			recording.add(TurtleRecording.COLOR, startColor.getRGB());
+			recording.add(TurtleRecording.LINE_WIDTH, startWidth);
+		}
+		int finalColor = segments.getFinalColor();
+		float finalWidth = segments.getFinalWidth();
+		if (finalColor != SegmentBuffer.INHERITED_COLOR)
+			color(new Color(finalColor, true));
+		if (finalWidth == finalWidth)
+			lineWidth(finalWidth);
+		if (n > 0 && autoRepaint) {
+			pictureChanged();
+		}
+	}
+
+	/**
+	 * Returns the x-coordinate of the turtle's position.
+	 */
+	public double getTurtleX() {
+		return turtleX;
+	}
+
+	/**
+	 * Returns the y-coordinate of the turtle's position.
+	 */
+	public double getTurtleY() {
+		return turtleY;
+	}
+
+	/**
+	 * Returns the direction that the turtle is facing, in degrees.
+	 */
+	public double getHeading() {
+		return facing;
+	}
+
+	/**
+	 * Returns the color that is used for the turtle's trail.
+	 */
+	public Color getColor() {
+		return canvasGraphics.getColor();
+	}
+
+	/**
+	 * Returns the width of the turtle's trail, in pixels.
+	 */
+	public double getLineWidth() {
+		return lineWidth;
+	}
+
+	/**
+	 * Returns the number of turtle units in one pixel of the picture.  The picture
+	 * is 20 units wide and high, so this is 20 divided by its size in pixels.  If
+	 * the picture is not square, the larger size is used.
+	 */
+	public double getUnitsPerPixel() {
+		return 20.0 / Math.max(canvas.getWidth(), canvas.getHeight());
+	}
+
+	/**
+	 * Sets the size, in pixels, below which the recursive drawing methods in
+	 * TurtleGraphics and SierpinskiTurtle stop adding detail.  A part of the
+	 * picture that is smaller than this is drawn as if it were at level zero,
+	 * for example as a single line for a Koch curve, so pictures at very high
+	 * levels take a bounded amount of time.  A value of 1 gives almost the same
+	 * picture as drawing every level.  The default is 0, which means that every
+	 * level is drawn.
+	 */
+	public void setDetailThreshold(double pixels) {
+		if (pixels < 0)
+			throw new IllegalArgumentException("The detail threshold can't be negative.");
+		detailThreshold = pixels;
+	}
+
+	/**
+	 * Returns the detail threshold, in pixels, converted to turtle units.
+	 * See setDetailThreshold().
+	 */
+	public double getDetailSize() {
+		return detailThreshold * getUnitsPerPixel();
+	}
+
+	/**
+	 * Returns the width of the picture, in pixels.  This is the size of the
+	 * picture that the turtle draws on, which is not always the size of the panel.
+	 */
+	int getCanvasWidth() {
+		return canvas.getWidth();
+	}
+
+	/**
+	 * Returns the height of the picture, in pixels.
+	 */
+	int getCanvasHeight() {
+		return canvas.getHeight();
+	}
+
+	/**
+	 * Draws an image onto the picture, with its upper left corner at a given pixel,
+	 * and repaints the panel if autorepaint is on.  The image is drawn over the
+	 * picture, so it should be transparent except for what it adds to the picture.
+	 * This is used by FractalTileCache.
+	 */
+	void drawImage(BufferedImage image, int x, int y) {
+		flush();
+		synchronized(this) {
+			canvasGraphics.drawImage(image, x, y, null);
+			canvasVersion++;
+		}
+		if (autoRepaint) {
+			pictureChanged();
+		}
+	}
+
+	/**
+	 * Returns a copy of the picture, after drawing any lines that are waiting
+	 * to be drawn.  This is used by ProgressiveRenderer.
+	 */
+	BufferedImage copyPicture() {
+		flush();
+		synchronized(this) {
+			BufferedImage copy = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_RGB);
+			Graphics g = copy.createGraphics();
+			g.drawImage(canvas, 0, 0, null);
+			g.dispose();
+			return copy;
+		}
+	}
+
+	/**
+	 * Replaces the whole picture with an image of the same size, while holding the
+	 * panel's lock, so the panel never shows part of the old picture and part of
+	 * the new one.  Then the panel is repainted, if autorepaint is on, without
+	 * waiting.  This can be called by any thread; it is used by ProgressiveRenderer.
+	 */
+	void setPicture(BufferedImage image) {
+		synchronized(this) {
+			canvasGraphics.drawImage(image, 0, 0, null);
+			canvasVersion++;
+		}
+		changedByOtherThread();
+	}
+
 	/**
 	 * Raise the turtle's pen, so it doesn't leave a trail when it moves.
 	 */
 	public void penUp() {
 		penIsUp = true;
+		if (recording != null)
+			recording.add(TurtleRecording.PEN_UP);
 	}
 
 	/**
@@ -228,6 +1018,8 @@ public class TurtlePanel extends JPanel {
 	 */
 	public void penDown() {
 		penIsUp = false;
+		if (recording != null)
+			recording.add(TurtleRecording.PEN_DOWN);
 	}
 
 	/**
@@ -237,7 +1029,13 @@ public class TurtlePanel extends JPanel {
 	public void color(Color c) {
 		if (c == null)
 			c = Color.BLACK;
+		if (batchSize > 0 && !c.equals(canvasGraphics.getColor()))
+			flush();
+		if (renderThread != null && !c.equals(canvasGraphics.getColor()))
+			putRecord(STATE_RECORD, c.getRGB(), Float.floatToIntBits((float)lineWidth), 0);
 		canvasGraphics.setColor(c);
+		if (recording != null)
+			recording.add(TurtleRecording.COLOR, c.getRGB());
 	}
 
 	/**
@@ -260,18 +1058,60 @@ public class TurtlePanel extends JPanel {
 	public void lineWidth(double width) {
 		if (width < 1)
 			width = 1;
-		if (width < 2)
-			((Graphics2D)canvasGraphics).setStroke(new BasicStroke((float)width));
+		if (width != lineWidth && batchSize > 0)
+			flush();
+		if (renderThread != null && width != lineWidth)
+			putRecord(STATE_RECORD, canvasGraphics.getColor().getRGB(), Float.floatToIntBits((float)width), 0);
+		lineWidth = width;
+		((Graphics2D)canvasGraphics).setStroke(stroke(width));
+		if (recording != null)
+			recording.add(TurtleRecording.LINE_WIDTH, width);
+	}
+
+	/**
+	 * Returns the stroke that is used for drawing lines of a given width,
+	 * which must be at least 1.  Wide lines have rounded ends and joins.
+	 */
+	static BasicStroke stroke(double width) {
+		float w = (float)width;
+		int cap = w < 2 ? BasicStroke.CAP_SQUARE : BasicStroke.CAP_ROUND;
+		int slot = (Float.floatToIntBits(w) * 31 + cap) & (STROKE_CACHE_SIZE - 1);
+		BasicStroke stroke = strokeCache.get(slot);
+		if (stroke != null && stroke.getLineWidth() == w && stroke.getEndCap() == cap)
+			return stroke;
+		if (w < 2)
+			stroke = new BasicStroke(w);
 		else
-			((Graphics2D)canvasGraphics).setStroke(new BasicStroke((float)width,BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND));			
+			stroke = new BasicStroke(w,BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND);
+		strokeCache.set(slot, stroke);
+		return stroke;
 	}
 
+	/**
+	 * A small cache of the strokes made by stroke(), so that drawings that change
+	 * the line width at every level of a recursion, such as TurtleGraphics.Tree(),
+	 * don't make a new BasicStroke every time.  Each stroke goes into a slot
+	 * chosen from its width and cap, replacing whatever was there before, so the
+	 * cache never holds more than STROKE_CACHE_SIZE strokes.  The cache is used
+	 * by the render thread, by TurtleHandles and by TiledCanvas tasks as well as
+	 * by the drawing thread.  The slots are an AtomicReferenceArray, so a thread
+	 * that finds a stroke in a slot sees it completely built; without that, the
+	 * fields of a BasicStroke, which are not final, could be seen half set.
+	 */
+	private static final int STROKE_CACHE_SIZE = 64;
+	private static final AtomicReferenceArray<BasicStroke> strokeCache =
+			new AtomicReferenceArray<BasicStroke>(STROKE_CACHE_SIZE);
+
 	/**
 	 * Sets the font that is used by the string() method for drawing strings.
 	 * The default font is:  new Font("Serif", Font.PLAIN, 14)
 	 */
 	public void font(Font f) {
 		canvasGraphics.setFont(f);
+		fontMetrics = null;
+		stringCache.clear();
+		if (recording != null)
+			recording.add(TurtleRecording.FONT, f);
 	}
 
 	/**
@@ -279,16 +1119,116 @@ public class TurtlePanel extends JPanel {
 	 * or change direction.
 	 */
 	public void clear(){
-		Color c = canvasGraphics.getColor();
-		canvasGraphics.setColor(Color.WHITE);
-		canvasGraphics.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
-		canvasGraphics.setColor(c);
+		batchSize = 0;  // Lines that haven't been drawn yet would be erased anyway.
+		if (renderThread != null)
+			waitForRenderer();
+		synchronized(this) {
+			Color c = canvasGraphics.getColor();
+			canvasGraphics.setColor(Color.WHITE);
+			canvasGraphics.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+			canvasGraphics.setColor(c);
+			canvasVersion++;
+		}
+		if (recording != null)
+			recording.add(TurtleRecording.CLEAR);
+		SegmentListener[] listeners = segmentListeners;
+		if (listeners != null) {
+			synchronized(this) {
+				for (SegmentListener listener : listeners)
+					listener.pictureCleared();
+			}
+		}
 		if (autoRepaint) {
-			repaint();
-			delay(autoDelay);
+			pictureChanged();
 		}
 	}
 
+	/**
+	 * Starts recording the drawing commands that are given to this panel.  All
+	 * moves, turns, pen changes, colors, line widths, fonts, strings and clears
+	 * from now until stopRecording() is called are added to the recording, which
+	 * starts with the turtle's current position, heading, pen state, color, line
+	 * width and font, so
+	 * that replaying it reproduces the drawing exactly.  If a recording is
+	 * already in progress, it is discarded.  (Don't replay a recording onto
+	 * this panel while it is still being recorded.)
+	 * @return the new recording, which will grow as more commands are given.
+	 */
+	public TurtleRecording startRecording() {
+		recording = new TurtleRecording();
+		recording.add(TurtleRecording.MOVE_TO, turtleX, turtleY);
+		recording.add(TurtleRecording.FACE, facing);
+		recording.add(penIsUp ? TurtleRecording.PEN_UP : TurtleRecording.PEN_DOWN);
+		recording.add(TurtleRecording.COLOR, canvasGraphics.getColor().getRGB());
+		recording.add(TurtleRecording.LINE_WIDTH, lineWidth);
+		recording.add(TurtleRecording.FONT, canvasGraphics.getFont());
+		return recording;
+	}
+
+	/**
+	 * Stops recording drawing commands.
+	 * @return the recording that was in progress, or null if there was none.
+	 */
+	public TurtleRecording stopRecording() {
+		TurtleRecording r = recording;
+		recording = null;
+		return r;
+	}
+
+	/**
+	 * Adds a listener that will be told about every line that is drawn on this
+	 * panel from now on, including the lines drawn by drawSegments(), and about
+	 * every call to clear().  The listener is called in the drawing thread, just
+	 * before the line is drawn.  Strings are not reported.  Listeners are always
+	 * called while holding the panel's lock, so even when TurtleHandles draw from
+	 * other threads at the same time as the panel's turtle (see createTurtle()),
+	 * a listener gets only one call at a time.
+	 */
+	synchronized public void addSegmentListener(SegmentListener listener) {
+		if (listener == null)
+			throw new IllegalArgumentException("The listener can't be null.");
+		if (segmentListeners == null)
+			segmentListeners = new SegmentListener[] { listener };
+		else {
+			segmentListeners = Arrays.copyOf(segmentListeners, segmentListeners.length + 1);
+			segmentListeners[segmentListeners.length - 1] = listener;
+		}
+	}
+
+	/**
+	 * Removes a listener that was added with addSegmentListener().  If the
+	 * listener was not added, nothing is done.
+	 */
+	synchronized public void removeSegmentListener(SegmentListener listener) {
+		if (segmentListeners == null)
+			return;
+		for (int i = 0; i < segmentListeners.length; i++) {
+			if (segmentListeners[i] == listener) {
+				if (segmentListeners.length == 1) {
+					segmentListeners = null;
+				}
+				else {
+					SegmentListener[] list = new SegmentListener[segmentListeners.length - 1];
+					System.arraycopy(segmentListeners, 0, list, 0, i);
+					System.arraycopy(segmentListeners, i+1, list, i, list.length - i);
+					segmentListeners = list;
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Tells the segment listeners about a line, while holding the panel's lock,
+	 * so that they are never called by two threads at once.
+	 */
+	synchronized private void fireSegmentDrawn(double x1, double y1, double x2, double y2, int argb, double width) {
+		SegmentListener[] listeners = segmentListeners;
+		if (listeners != null)
+			for (SegmentListener listener : listeners)
+				listener.segmentDrawn(x1, y1, x2, y2, argb, width);
+	}
+
 	/**
 	 * Determines whether the turtle should be displayed.  The default is true.
 	 * If the value is set to false, the turtle is not shown.
@@ -296,6 +1236,8 @@ public class TurtlePanel extends JPanel {
 	public void setTurtleIsVisible(boolean visible) {
 		if (visible != turtleIsVisible) {
 			turtleIsVisible = visible;
+			if (visible && renderThread != null)
+				pose = new Pose(turtleX, turtleY, facing);  // The pose isn't kept up to date while the turtle is hidden.
 			if (autoRepaint)
 				repaint();
 		}
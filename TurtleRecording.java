@@ -0,0 +1,205 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A TurtleRecording is a compact record of the drawing commands given to a
+ * TurtlePanel, which can be replayed later onto the same panel, onto another
+ * TurtlePanel, or onto any image.  A recording is made by calling
+ * startRecording() in TurtlePanel; from then on, every move, heading change,
+ * pen change, color, line width, font, string and clear is appended to the
+ * recording.
+ * <p>The commands are stored in two growable arrays of primitive values:  one
+ * byte per command for the opcode, and the numbers that the command needs in
+ * an array of doubles.  Moves are recorded as the absolute position that the
+ * turtle moved to, so replaying a recording does not need to compute any sines
+ * or cosines, and it is much faster than running the recursive methods that
+ * made the drawing in the first place.  Strings and fonts are kept in a list.
+ */
+public class TurtleRecording {
+
+	static final byte MOVE_TO = 0;     // operands: x, y.  Move with the pen up.
+	static final byte LINE_TO = 1;     // operands: x, y.  Move with the pen down.
+	static final byte FACE = 2;        // operand: heading, in degrees.
+	static final byte COLOR = 3;       // operand: ARGB value of the color.
+	static final byte LINE_WIDTH = 4;  // operand: width.
+	static final byte STRING = 5;      // operand: index of the string in objects.
+	static final byte FONT = 6;        // operand: index of the font in objects.
+	static final byte CLEAR = 7;       // no operands.
+	static final byte PEN_UP = 8;      // no operands.
+	static final byte PEN_DOWN = 9;    // no operands.
+
+	private byte[] ops = new byte[256];        // one opcode for each command.
+	private int opCount;                       // number of commands.
+	private double[] operands = new double[512];  // the operands of all the commands, in order.
+	private int operandCount;                  // number of operands.
+	private ArrayList<Object> objects = new ArrayList<Object>();  // strings and fonts used by the commands.
+
+
+	/**
+	 * Returns the number of commands in the recording.
+	 */
+	public int size() {
+		return opCount;
+	}
+
+
+	/**
+	 * Removes all commands from the recording.
+	 */
+	public void reset() {
+		opCount = 0;
+		operandCount = 0;
+		objects.clear();
+	}
+
+
+	void add(byte op) {
+		if (opCount == ops.length)
+			ops = Arrays.copyOf(ops, 2*opCount);
+		ops[opCount++] = op;
+	}
+
+	void add(byte op, double a) {
+		add(op);
+		if (operandCount + 1 > operands.length)
+			operands = Arrays.copyOf(operands, 2*operands.length);
+		operands[operandCount++] = a;
+	}
+
+	void add(byte op, double a, double b) {
+		add(op);
+		if (operandCount + 2 > operands.length)
+			operands = Arrays.copyOf(operands, 2*operands.length);
+		operands[operandCount++] = a;
+		operands[operandCount++] = b;
+	}
+
+	void add(byte op, Object obj) {
+		add(op, objects.size());
+		objects.add(obj);
+	}
+
+
+	/**
+	 * Replays the recording onto a TurtlePanel, by calling the panel's methods.
+	 * The panel is left with the final position, heading, pen state, color, line
+	 * width and font of the recording.  For speed, you might want to turn off the
+	 * panel's automatic repainting during the replay, and call repaint() at the end.
+	 */
+	public void replay(TurtlePanel turtle) {
+		int k = 0;  // index of the next operand
+		int pen = -1;  // the recorded pen state: 1 for up, 0 for down, -1 if not recorded yet
+		for (int i = 0; i < opCount; i++) {
+			switch (ops[i]) {
+			case PEN_UP:
+				pen = 1;
+				break;
+			case PEN_DOWN:
+				pen = 0;
+				break;
+			case MOVE_TO:
+				turtle.penUp();
+				turtle.moveTo(operands[k], operands[k+1]);
+				k += 2;
+				break;
+			case LINE_TO:
+				turtle.penDown();
+				turtle.moveTo(operands[k], operands[k+1]);
+				k += 2;
+				break;
+			case FACE:
+				turtle.face(operands[k++]);
+				break;
+			case COLOR:
+				turtle.color(new Color((int)operands[k++], true));
+				break;
+			case LINE_WIDTH:
+				turtle.lineWidth(operands[k++]);
+				break;
+			case STRING:
+				turtle.string((String)objects.get((int)operands[k++]));
+				break;
+			case FONT:
+				turtle.font((Font)objects.get((int)operands[k++]));
+				break;
+			case CLEAR:
+				turtle.clear();
+				break;
+			}
+		}
+		// Moves set the pen as they need it, so the recorded state is only applied at the end.
+		if (pen == 1)
+			turtle.penUp();
+		else if (pen == 0)
+			turtle.penDown();
+	}
+
+
+	/**
+	 * Replays the recording onto an image, using the same coordinate system as a
+	 * TurtlePanel:  x from -10 at the left to 10 at the right, y from -10 at the
+	 * bottom to 10 at the top.  The drawing uses red lines of width 1 and a 14-point
+	 * serif font until the recording says otherwise, as in a new TurtlePanel.
+	 */
+	public void replay(BufferedImage image) {
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setColor(Color.RED);
+		g.setFont( new Font("Serif", Font.PLAIN, 14) );
+		int width = image.getWidth();
+		int height = image.getHeight();
+		double x = 0, y = 0;   // the turtle's position
+		double facing = 0;     // the turtle's heading
+		int k = 0;
+		for (int i = 0; i < opCount; i++) {
+			switch (ops[i]) {
+			case MOVE_TO:
+				x = operands[k++];
+				y = operands[k++];
+				break;
+			case LINE_TO:
+				double x2 = operands[k++];
+				double y2 = operands[k++];
+				g.drawLine( (int)((0.5 + x / 20.0)*width), (int)((0.5 - y / 20.0)*height),
+						(int)((0.5 + x2 / 20.0)*width), (int)((0.5 - y2 / 20.0)*height) );
+				x = x2;
+				y = y2;
+				break;
+			case FACE:
+				facing = operands[k++];
+				break;
+			case COLOR:
+				g.setColor(new Color((int)operands[k++], true));
+				break;
+			case LINE_WIDTH:
+				g.setStroke(TurtlePanel.stroke(operands[k++]));
+				break;
+			case STRING:
+				String str = (String)objects.get((int)operands[k++]);
+				Graphics2D g2 = (Graphics2D)g.create();
+				double rad = facing / 180 * Math.PI;
+				g2.translate((int)((0.5 + x / 20.0)*width), (int)((0.5 - y / 20.0)*height));
+				g2.rotate(-rad);
+				g2.drawString(str, 0, 0);
+				double forward = g2.getFontMetrics().stringWidth(str) / (double)width * 20.0;
+				g2.dispose();
+				x += Math.cos(rad) * forward;
+				y += Math.sin(rad) * forward;
+				break;
+			case FONT:
+				g.setFont((Font)objects.get((int)operands[k++]));
+				break;
+			case CLEAR:
+				Color c = g.getColor();
+				g.setColor(Color.WHITE);
+				g.fillRect(0, 0, width, height);
+				g.setColor(c);
+				break;
+			}
+		}
+		g.dispose();
+	}
+
+}
@@ -0,0 +1,38 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, with the same command line options as the standard
+ * JMH main class, but with the GC profiler always turned on so that every
+ * result also shows the allocation rate (gc.alloc.rate.norm is bytes
+ * allocated per operation).  For example, to run only the solver
+ * benchmarks for the A* algorithm:
+ * <pre>
+ *    java -jar benchmarks/target/benchmarks.jar SolverBenchmark -p algorithm=astar
+ * </pre>
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		if (commandLine.shouldHelp()) {
+			commandLine.showHelp();
+			return;
+		}
+		Options options = new OptionsBuilder()
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class)
+				.build();
+		Runner runner = new Runner(options);
+		if (commandLine.shouldList())
+			runner.list();
+		else
+			runner.run();
+	}
+
+}
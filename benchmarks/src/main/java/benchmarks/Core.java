@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Access to the classes of the maze and turtle programs.  Those classes are in
+ * the unnamed package, which Java code in a named package (as JMH requires for
+ * benchmarks) can't refer to directly, so they are reached through method handles.
+ * The handles are kept in static final fields, so the JIT compiler can inline
+ * the calls and they add next to nothing to the measured times.
+ */
+final class Core {
+
+	private Core() {
+	}
+
+	static final MethodHandle NEW_MAZE_GRID = constructor("MazeGrid", int.class, int.class);
+	static final MethodHandle MAZE_CREATE = handle("MazeGrid", "create", int.class);
+	static final MethodHandle MAZE_REPLACE = handle("MazeGrid", "replace", byte.class, byte.class);
+	static final MethodHandle CREATE_ALGORITHM = handle("MazeSolver", "createAlgorithm", String.class);
+	static final MethodHandle SOLVE = handle("MazeSolverAlgorithm", "solve",
+			type("MazeGrid"), int.class, int.class, int.class, int.class);
+
+	static final MethodHandle NEW_TURTLE_PANEL = constructor("TurtlePanel", int.class);
+	static final MethodHandle SET_AUTO_REPAINT = handle("TurtlePanel", "setAutoRepaint", boolean.class);
+	static final MethodHandle SET_TURTLE_VISIBLE = handle("TurtlePanel", "setTurtleIsVisible", boolean.class);
+	static final MethodHandle CLEAR = handle("TurtlePanel", "clear");
+	static final MethodHandle HOME = handle("TurtlePanel", "home");
+	static final MethodHandle KOCH = handle("TurtleGraphics", "koch", double.class, int.class);
+	static final MethodHandle SQUARE = handle("TurtleGraphics", "square", double.class, int.class);
+	static final MethodHandle TREE = handle("TurtleGraphics", "Tree", double.class, int.class);
+	static final MethodHandle SIERPINSKI = handle("SierpinskiTurtle", "sierpinskiTriangle", double.class, int.class);
+
+	static final MethodHandle READ_STREAM = handle("TextIO", "readStream", java.io.Reader.class);
+	static final MethodHandle GET_INT = handle("TextIO", "getInt");
+	static final MethodHandle GET_DOUBLE = handle("TextIO", "getDouble");
+
+
+	/**
+	 * Makes a TurtlePanel the turtle that is used by the static drawing methods
+	 * in TurtleGraphics and SierpinskiTurtle, which normally set it up in main().
+	 */
+	static void useTurtle(Object turtle) {
+		try {
+			for (String program : new String[] { "TurtleGraphics", "SierpinskiTurtle" }) {
+				Field field = Class.forName(program).getDeclaredField("turtle");
+				field.setAccessible(true);
+				field.set(null, turtle);
+			}
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	private static Class<?> type(String name) {
+		try {
+			return Class.forName(name);
+		}
+		catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle constructor(String className, Class<?>... parameters) {
+		try {
+			return MethodHandles.lookup().findConstructor(type(className), MethodType.methodType(void.class, parameters));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle handle(String className, String name, Class<?>... parameters) {
+		// Uses reflection so that private methods, such as the drawing methods of
+		// SierpinskiTurtle, can be benchmarked too.
+		try {
+			Method m = type(className).getDeclaredMethod(name, parameters);
+			m.setAccessible(true);
+			return MethodHandles.lookup().unreflect(m);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
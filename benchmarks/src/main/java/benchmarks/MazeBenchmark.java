@@ -0,0 +1,44 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to create one maze (MazeGrid.create()), by grid size and generator.
+ * The flood-fill generator recurses once per square of a corridor, so its
+ * forks get a large thread stack.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss256m")
+public class MazeBenchmark {
+
+	/** Rows and columns of the maze; 121 is the height of the default MazePanel. */
+	@Param({ "121", "501", "1001" })
+	public int size;
+
+	/** 0 for MazeGrid.FLOOD_FILL, 1 for MazeGrid.UNION_FIND. */
+	@Param({ "0", "1" })
+	public int generator;
+
+	@Benchmark
+	public Object create() throws Throwable {
+		Object grid = Core.NEW_MAZE_GRID.invoke(size, size);
+		Core.MAZE_CREATE.invoke(grid, generator);
+		return grid;
+	}
+
+}
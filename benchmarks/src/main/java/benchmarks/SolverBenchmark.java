@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for each maze solving algorithm to solve a maze, by grid size.  A new
+ * maze is made for every trial, and solve() erases the marks left by the
+ * previous call before solving, so the solvers always start from an unsolved
+ * grid.  The erasing is done inside the measured method, since a setup at
+ * Level.Invocation costs more than the small solves themselves; reset() times
+ * the erasing alone, to be subtracted from the score of solve().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+
+	/** A name accepted by MazeSolver.createAlgorithm(). */
+	@Param({ "dfs", "bfs", "astar", "bidirectional", "deadend" })
+	public String algorithm;
+
+	/** Rows and columns of the maze. */
+	@Param({ "121", "501", "1001" })
+	public int size;
+
+	private Object solver;
+	private Object grid;
+
+	@Setup(Level.Trial)
+	public void createMaze() throws Throwable {
+		solver = Core.CREATE_ALGORITHM.invoke(algorithm);
+		grid = Core.NEW_MAZE_GRID.invoke(size, size);
+		Core.MAZE_CREATE.invoke(grid, 1);
+	}
+
+	private void resetGrid() throws Throwable {
+		Core.MAZE_REPLACE.invoke(grid, (byte)2, (byte)0);  // PATH to OPEN
+		Core.MAZE_REPLACE.invoke(grid, (byte)3, (byte)0);  // VISITED to OPEN
+	}
+
+	@Benchmark
+	public boolean solve() throws Throwable {
+		resetGrid();
+		return (boolean)Core.SOLVE.invoke(solver, grid, 1, 1, size-2, size-2);
+	}
+
+	/** The cost of erasing the marks, which is included in solve(). */
+	@Benchmark
+	public void reset() throws Throwable {
+		resetGrid();
+	}
+
+}
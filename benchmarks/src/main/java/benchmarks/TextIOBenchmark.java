@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for TextIO to read one number from a stream, for ints and doubles.
+ * Each call reads a batch of COUNT numbers from an in-memory string.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextIOBenchmark {
+
+	private static final int COUNT = 1000;
+
+	private String ints;
+	private String doubles;
+
+	@Setup(Level.Trial)
+	public void createInput() {
+		Random random = new Random(42);
+		StringBuilder intText = new StringBuilder();
+		StringBuilder doubleText = new StringBuilder();
+		for (int i = 0; i < COUNT; i++) {
+			intText.append(random.nextInt()).append(i % 10 == 9 ? '\n' : ' ');
+			doubleText.append(random.nextDouble() * 1000).append(i % 10 == 9 ? '\n' : ' ');
+		}
+		ints = intText.toString();
+		doubles = doubleText.toString();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public long getInt() throws Throwable {
+		Core.READ_STREAM.invoke(new StringReader(ints));
+		long sum = 0;
+		for (int i = 0; i < COUNT; i++)
+			sum += (int)Core.GET_INT.invoke();
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public double getDouble() throws Throwable {
+		Core.READ_STREAM.invoke(new StringReader(doubles));
+		double sum = 0;
+		for (int i = 0; i < COUNT; i++)
+			sum += (double)Core.GET_DOUBLE.invoke();
+		return sum;
+	}
+
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to draw each of the recursive turtle pictures onto an off-screen
+ * 600-by-600 TurtlePanel, by recursion level.  The panel is never shown,
+ * automatic repainting is turned off, and the benchmark runs headless.
+ * The number of segments at level n is 4^n for koch, 5^n for square,
+ * 3*3^n for sierpinski and about 2^n for tree.  Each call first sends the
+ * turtle home and clears the panel.  That is done inside the measured method,
+ * since a setup at Level.Invocation costs more than drawing the low levels;
+ * clear() times it alone, to be subtracted from the other scores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TurtleBenchmark {
+
+	@Param({ "2", "4", "6", "8" })
+	public int level;
+
+	private Object turtle;
+
+	@Setup(Level.Trial)
+	public void createTurtle() throws Throwable {
+		turtle = Core.NEW_TURTLE_PANEL.invoke(600);
+		Core.SET_AUTO_REPAINT.invoke(turtle, false);
+		Core.SET_TURTLE_VISIBLE.invoke(turtle, false);
+		Core.useTurtle(turtle);
+	}
+
+	private void reset() throws Throwable {
+		Core.HOME.invoke(turtle);
+		Core.CLEAR.invoke(turtle);
+	}
+
+	/** The cost of sending the turtle home and clearing, which is included in the others. */
+	@Benchmark
+	public void clear() throws Throwable {
+		reset();
+	}
+
+	@Benchmark
+	public void koch() throws Throwable {
+		reset();
+		Core.KOCH.invoke(18.0, level);
+	}
+
+	@Benchmark
+	public void square() throws Throwable {
+		reset();
+		Core.SQUARE.invoke(18.0, level);
+	}
+
+	@Benchmark
+	public void tree() throws Throwable {
+		reset();
+		Core.TREE.invoke(9.0, level);
+	}
+
+	@Benchmark
+	public void sierpinski() throws Throwable {
+		reset();
+		Core.SIERPINSKI.invoke(16.0, level);
+	}
+
+}